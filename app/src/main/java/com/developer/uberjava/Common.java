@@ -1,26 +1,85 @@
 package com.developer.uberjava;
 
-import android.app.Notification;
-import android.app.NotificationChannel;
-import android.app.NotificationManager;
-import android.app.PendingIntent;
-import android.content.Context;
-import android.content.Intent;
-import android.graphics.BitmapFactory;
-import android.graphics.Color;
-import android.os.Build;
-
-import androidx.core.app.NotificationCompat;
-
 import com.developer.uberjava.models.DriverInfoModel;
-import com.developer.uberjava.service.MyFirebaseMessagingService;
 
 public class Common {
     public static final String DRIVER_INFO_REFERENCE = "DriverInfo";
     public static final String DRIVERS_LOCATION_REFERENCES = "DriversLocation";
     public static final String TOKEN_REFERENCE = "Token";
+    public static final String DRIVER_TRAIL_REFERENCE = "DriverTrail";
     public static final String NOTI_TITLE = "title";
     public static final String NOTI_CONTENT = "body";
+    public static final String NOTI_COLLAPSE_KEY = "collapse_key";
+
+    //Ride request data messages
+    public static final String NOTI_TYPE = "type";
+    public static final String RIDE_REQUEST_TYPE = "ride_request";
+    public static final String RIDE_REQUEST_ID = "request_id";
+    public static final String RIDE_REQUEST_RIDER_UID = "rider_uid";
+    public static final String RIDE_REQUEST_PICKUP_LAT = "pickup_lat";
+    public static final String RIDE_REQUEST_PICKUP_LNG = "pickup_lng";
+    public static final String RIDE_REQUEST_PICKUP_ADDRESS = "pickup_address";
+    public static final String RIDE_REQUEST_EXPIRES_AT = "expires_at";
+    public static final long RIDE_REQUEST_DEFAULT_TTL_MS = 30000;
+    public static final int RIDE_INBOX_CAPACITY = 16;
+    //Per-fix re-ranking only republishes on a reorder or a pickup distance moving this much
+    public static final double RIDE_INBOX_DISTANCE_STEP_METERS = 10;
+
+    //Open pickups are GeoFire keys under PickupRequests, mirrored within this radius of the driver
+    public static final String PICKUP_REQUESTS_REFERENCE = "PickupRequests";
+    public static final double PICKUP_QUERY_RADIUS_KM = 3;
+    public static final double PICKUP_INDEX_CELL_METERS = 250;
+
+    //Pushes closer together than this update the group silently instead of alerting again
+    public static final long NOTIFICATION_BURST_WINDOW_MS = 3000;
+
+    //How DriversLocation is sharded: by Geocoder city name or by geohash prefix
+    public static final int SHARD_BY_CITY = 0;
+    public static final int SHARD_BY_GEOHASH = 1;
+    public static final int DRIVERS_LOCATION_SHARD_MODE = SHARD_BY_CITY;
+    public static final int GEOHASH_SHARD_PRECISION = 4;
+    //City mode caches Geocoder answers per geohash cell, precision 5 is ~4.9km x 4.9km,
+    //small enough to not cross many city borders
+    public static final int CITY_CELL_PRECISION = 5;
+    public static final int CITY_CACHE_SIZE = 64;
+
+    //Kalman smoothing ahead of everything else: acceleration noise in m/s^2, fixes implying more than
+    //200 km/h are dropped, 5 drops in a row or a 60s gap restart the filter
+    public static final double SMOOTHING_ACCELERATION_NOISE = 2.0;
+    public static final double SMOOTHING_MAX_SPEED_MPS = 55;
+    public static final int SMOOTHING_MAX_CONSECUTIVE_REJECTS = 5;
+    public static final long SMOOTHING_RESET_GAP_MS = 60000;
+    public static final double SMOOTHING_MIN_SPEED_FOR_BEARING_MPS = 2;
+
+    //GeoFire publish dead-band and rate limit
+    public static final double PUBLISH_MIN_DISTANCE_METERS = 20;
+    public static final double PUBLISH_MIN_BEARING_DEGREES = 30;
+    public static final long PUBLISH_MIN_INTERVAL_MS = 10000;
+    public static final double PUBLISH_FLUSH_DISTANCE_METERS = 200;
+
+    //Offline location journal, 4096 records is ~96KB on disk
+    public static final int LOCATION_JOURNAL_CAPACITY = 4096;
+    public static final int LOCATION_JOURNAL_DRAIN_BATCH = 200;
+
+    public static final long METRICS_DUMP_INTERVAL_MINUTES = 5;
+
+    //Sign-out waits this long for the GeoFire delete, then signs out anyway (offline, no ack coming)
+    public static final long SIGN_OUT_REMOVE_TIMEOUT_MS = 5000;
+
+    //A cached profile older than this is not shown at startup, we wait for DriverInfo instead
+    public static final long PROFILE_CACHE_TTL_MS = 7L * 24 * 60 * 60 * 1000;
+
+    //Token/profile sync: writes within the debounce share one updateChildren, failures back off 1s..60s
+    public static final long SYNC_DEBOUNCE_MS = 500;
+    public static final long SYNC_RETRY_INITIAL_MS = 1000;
+    public static final long SYNC_RETRY_MAX_MS = 60000;
+    public static final int SYNC_MAX_RETRIES = 6;
+
+    //Avatar upload: the header shows it at 80dp, 320px covers xxxhdpi
+    public static final int AVATAR_UPLOAD_SIZE_PX = 320;
+    public static final int AVATAR_UPLOAD_QUALITY = 80;
+    public static final boolean AVATAR_UPLOAD_WEBP = true;
+    public static final long AVATAR_UPLOAD_PROGRESS_INTERVAL_MS = 250;
 
     public static DriverInfoModel currentUser;
 
@@ -34,35 +93,4 @@ public class Common {
             return "";
         }
     }
-
-    public static void showNotification(Context context, int id, String title, String body, Intent intent) {
-
-        PendingIntent pendingIntent;
-        if (intent != null) {
-            pendingIntent = PendingIntent.getActivity(context, id, intent, PendingIntent.FLAG_UPDATE_CURRENT);
-            String NOTIFICATION_CHANNEL_ID = "uber_remake_channel";
-            NotificationManager notificationManager = (NotificationManager) context.getSystemService(Context.NOTIFICATION_SERVICE);
-            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
-                NotificationChannel notificationChannel = new NotificationChannel(NOTIFICATION_CHANNEL_ID, "uber_remake", NotificationManager.IMPORTANCE_HIGH);
-                notificationChannel.setDescription("Uber remake");
-                notificationChannel.enableLights(true);
-                notificationChannel.setLightColor(Color.RED);
-                notificationChannel.setVibrationPattern(new long[]{0, 100, 500, 1000});
-                notificationManager.createNotificationChannel(notificationChannel);
-            }
-            NotificationCompat.Builder builder = new NotificationCompat.Builder(context, NOTIFICATION_CHANNEL_ID);
-            builder.setContentTitle(title)
-                    .setContentText(body)
-                    .setAutoCancel(false)
-                    .setPriority(NotificationCompat.PRIORITY_HIGH)
-                    .setDefaults(Notification.DEFAULT_VIBRATE)
-                    .setSmallIcon(R.drawable.ic_baseline_directions_car_24)
-                    .setLargeIcon(BitmapFactory.decodeResource(context.getResources(), R.drawable.ic_baseline_directions_car_24));
-            if (pendingIntent != null) {
-                builder.setContentIntent(pendingIntent);
-            }
-            Notification notification = builder.build();
-            notificationManager.notify(id, notification);
-        }
-    }
 }
@@ -4,15 +4,22 @@ import android.content.DialogInterface;
 import android.content.Intent;
 import android.net.Uri;
 import android.os.Bundle;
-import android.text.TextUtils;
+import android.util.Log;
 import android.view.MenuItem;
 import android.view.View;
 import android.view.Menu;
 import android.widget.ImageView;
 import android.widget.TextView;
 
-import com.bumptech.glide.Glide;
-import com.developer.uberjava.utils.UserUtils;
+import com.developer.uberjava.avatar.AvatarLoader;
+import com.developer.uberjava.avatar.AvatarPreparer;
+import com.developer.uberjava.avatar.AvatarUploadManager;
+import com.developer.uberjava.models.DriverInfoModel;
+import com.developer.uberjava.notification.NotificationDispatcher;
+import com.developer.uberjava.profile.DriverProfileStore;
+import com.developer.uberjava.profile.ProfileSync;
+import com.developer.uberjava.service.LocationPublishService;
+import com.developer.uberjava.utils.StartupTrace;
 import com.google.android.gms.tasks.OnCompleteListener;
 import com.google.android.gms.tasks.OnFailureListener;
 import com.google.android.gms.tasks.OnSuccessListener;
@@ -21,9 +28,7 @@ import com.google.android.material.floatingactionbutton.FloatingActionButton;
 import com.google.android.material.snackbar.Snackbar;
 import com.google.android.material.navigation.NavigationView;
 import com.google.firebase.auth.FirebaseAuth;
-import com.google.firebase.storage.FirebaseStorage;
 import com.google.firebase.storage.OnProgressListener;
-import com.google.firebase.storage.StorageReference;
 import com.google.firebase.storage.UploadTask;
 
 import androidx.annotation.NonNull;
@@ -37,8 +42,13 @@ import androidx.drawerlayout.widget.DrawerLayout;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.appcompat.widget.Toolbar;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Observable;
+import io.reactivex.android.schedulers.AndroidSchedulers;
+import io.reactivex.disposables.CompositeDisposable;
+import io.reactivex.schedulers.Schedulers;
 
 public class DriverHomeActivity extends AppCompatActivity {
 
@@ -47,10 +57,11 @@ public class DriverHomeActivity extends AppCompatActivity {
     private NavigationView navigationView;
     private NavController navController;
     private ImageView img_avatar;
+    private TextView txt_name, txt_phone, txt_star;
+    private final CompositeDisposable compositeDisposable = new CompositeDisposable();
     private static final int PICK_IMAGE_REQUEST = 7172;
 
     private AlertDialog waitingDialog;
-    private StorageReference storageReference;
     private Uri imageUri;
 
 
@@ -65,7 +76,7 @@ public class DriverHomeActivity extends AppCompatActivity {
         // Passing each menu ID as a set of Ids because each
         // menu should be considered as top level destinations.
         mAppBarConfiguration = new AppBarConfiguration.Builder(
-                R.id.nav_home)
+                R.id.nav_home, R.id.nav_metrics)
                 .setDrawerLayout(drawer)
                 .build();
         navController = Navigation.findNavController(this, R.id.nav_host_fragment);
@@ -73,6 +84,12 @@ public class DriverHomeActivity extends AppCompatActivity {
         NavigationUI.setupWithNavController(navigationView, navController);
         init();
 
+        //Runs after the first layout pass, close enough to first frame for cold start numbers
+        drawer.post(() -> {
+            StartupTrace.mark("home_drawn");
+            StartupTrace.report();
+        });
+
     }
 
     private void init() {
@@ -82,8 +99,6 @@ public class DriverHomeActivity extends AppCompatActivity {
                 .setMessage("Waiting...")
                 .create();
 
-        storageReference = FirebaseStorage.getInstance().getReference();
-
         navigationView.setNavigationItemSelectedListener(item -> {
             if (item.getItemId() == R.id.nav_sign_out) {
                 AlertDialog.Builder builder = new AlertDialog.Builder(DriverHomeActivity.this);
@@ -91,11 +106,15 @@ public class DriverHomeActivity extends AppCompatActivity {
                         .setMessage("Do you really sign out")
                         .setNegativeButton("CANCEL", (dialog, which) -> dialog.dismiss())
                         .setPositiveButton("SIGN OUT", (dialog, which) -> {
-                            FirebaseAuth.getInstance().signOut();
-                            Intent intent = new Intent(DriverHomeActivity.this, SplashScreenActivity.class);
-                            intent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TASK);
-                            startActivity(intent);
-                            finish();
+                            //The GeoFire delete has to reach the server while we still have auth,
+                            //only sign out once it is acked or clearly not coming
+                            waitingDialog.setMessage("Signing out...");
+                            waitingDialog.show();
+                            compositeDisposable.add(LocationPublishService.goOffline(DriverHomeActivity.this)
+                                    .timeout(Common.SIGN_OUT_REMOVE_TIMEOUT_MS, TimeUnit.MILLISECONDS, AndroidSchedulers.mainThread())
+                                    .onErrorComplete()
+                                    .observeOn(AndroidSchedulers.mainThread())
+                                    .subscribe(this::signOut));
                         })
                         .setCancelable(false);
 
@@ -105,20 +124,21 @@ public class DriverHomeActivity extends AppCompatActivity {
                     dialog.getButton(AlertDialog.BUTTON_NEGATIVE).setTextColor(getResources().getColor(R.color.black));
                 });
                 dialog.show();
+            } else {
+                NavigationUI.onNavDestinationSelected(item, navController);
+                drawer.closeDrawers();
             }
             return true;
         });
 
         //Set data for user
         View headerView = navigationView.getHeaderView(0);
-        TextView txt_name = headerView.findViewById(R.id.txt_name);
-        TextView txt_phone = headerView.findViewById(R.id.txt_phone);
-        TextView txt_star = headerView.findViewById(R.id.txt_star);
         img_avatar = headerView.findViewById(R.id.img_avatar);
 
-        txt_name.setText(Common.buildWelcomeMessage());
-        txt_phone.setText(Common.currentUser != null ? Common.currentUser.getPhoneNumber() : "");
-        txt_star.setText(Common.currentUser != null ? String.valueOf(Common.currentUser.getRating()) : "");
+        txt_name = headerView.findViewById(R.id.txt_name);
+        txt_phone = headerView.findViewById(R.id.txt_phone);
+        txt_star = headerView.findViewById(R.id.txt_star);
+        showProfile(Common.currentUser);
 
         img_avatar.setOnClickListener(v -> {
             Intent intent = new Intent();
@@ -127,12 +147,41 @@ public class DriverHomeActivity extends AppCompatActivity {
             startActivityForResult(intent, PICK_IMAGE_REQUEST);
         });
 
-        if (Common.currentUser != null && Common.currentUser.getAvatar() != null
-                && !TextUtils.isEmpty(Common.currentUser.getAvatar())) {
-            Glide.with(this).load(Common.currentUser.getAvatar()).into(img_avatar);
+        //Header starts from the cached profile and follows DriverInfo/<uid> from there
+        compositeDisposable.add(DriverProfileStore.getInstance(this)
+                .observe(FirebaseAuth.getInstance().getCurrentUser().getUid())
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(model -> {
+                    Common.currentUser = model;
+                    showProfile(model);
+                }, throwable -> Log.e("DriverHome", "" + throwable.getMessage())));
+
+        followAvatarUpload();
+    }
+
+    private void showProfile(DriverInfoModel model) {
+        txt_name.setText(Common.buildWelcomeMessage());
+        txt_phone.setText(model != null ? model.getPhoneNumber() : "");
+        txt_star.setText(model != null ? String.valueOf(model.getRating()) : "");
+
+        if (model != null) {
+            AvatarLoader.load(img_avatar, model.getAvatar());
         }
     }
 
+    @Override
+    protected void onResume() {
+        super.onResume();
+        //The driver is looking at the app, what was pushed so far has been seen
+        NotificationDispatcher.getInstance(this).clear();
+    }
+
+    @Override
+    protected void onDestroy() {
+        compositeDisposable.clear();
+        super.onDestroy();
+    }
+
     @Override
     public boolean onCreateOptionsMenu(Menu menu) {
         // Inflate the menu; this adds items to the action bar if it is present.
@@ -166,30 +215,17 @@ public class DriverHomeActivity extends AppCompatActivity {
                 .setNegativeButton("CANCEL", (dialog, which) -> dialog.dismiss())
                 .setPositiveButton("UPLOAD", (dialog, which) -> {
                     if (imageUri != null) {
-                        waitingDialog.setMessage("Uploading...");
+                        waitingDialog.setMessage("Preparing...");
                         waitingDialog.show();
 
-                        String unique_name = FirebaseAuth.getInstance().getCurrentUser().getUid();
-                        StorageReference avatarFolder = storageReference.child("avatars/" + unique_name);
-
-                        avatarFolder.putFile(imageUri)
-                                .addOnFailureListener(e -> {
-                                    waitingDialog.dismiss();
-                                    Snackbar.make(drawer, e.getMessage(), Snackbar.LENGTH_SHORT).show();
-                                })
-                                .addOnCompleteListener(task -> {
-                                    if (task.isSuccessful()) {
-                                        avatarFolder.getDownloadUrl().addOnSuccessListener(uri -> {
-                                            Map<String, Object> updateData = new HashMap<>();
-                                            updateData.put("avatar", uri.toString());
-                                            UserUtils.updateUser(drawer, updateData);
-                                        });
-                                    }
+                        //Downscale and re-encode off the main thread, the raw pick can be several MB
+                        compositeDisposable.add(AvatarPreparer.prepare(this, imageUri)
+                                .subscribeOn(Schedulers.io())
+                                .observeOn(AndroidSchedulers.mainThread())
+                                .subscribe(this::uploadAvatar, e -> {
                                     waitingDialog.dismiss();
-                                }).addOnProgressListener(snapshot -> {
-                                    double progress = (100.0 * snapshot.getBytesTransferred() / snapshot.getTotalByteCount());
-                                    waitingDialog.setMessage(new StringBuilder("Uploading:  ").append(progress).append("%"));
-                                });
+                                    Snackbar.make(drawer, "" + e.getMessage(), Snackbar.LENGTH_SHORT).show();
+                                }));
                     }
                 })
                 .setCancelable(false);
@@ -201,4 +237,43 @@ public class DriverHomeActivity extends AppCompatActivity {
         });
         dialog.show();
     }
-}
\ No newline at end of file
+
+    private void signOut() {
+        waitingDialog.dismiss();
+        DriverProfileStore.getInstance(this).clear();
+        ProfileSync.getInstance(this).clear();
+        FirebaseAuth.getInstance().signOut();
+        Intent intent = new Intent(this, SplashScreenActivity.class);
+        intent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TASK);
+        startActivity(intent);
+        finish();
+    }
+
+    private void uploadAvatar(File avatarFile) {
+        AvatarUploadManager.getInstance(this).start(FirebaseAuth.getInstance().getCurrentUser().getUid(), avatarFile);
+    }
+
+    //The upload outlives this screen, we only reflect its state. The new avatar reaches the
+    //header through DriverProfileStore once ProfileSync has written it.
+    private void followAvatarUpload() {
+        AvatarUploadManager uploadManager = AvatarUploadManager.getInstance(this);
+        compositeDisposable.add(uploadManager.status()
+                .observeOn(AndroidSchedulers.mainThread())
+                .switchMap(status -> {
+                    if (status == AvatarUploadManager.Status.UPLOADING) {
+                        waitingDialog.show();
+                        return uploadManager.progressPercent();
+                    }
+                    if (status == AvatarUploadManager.Status.SUCCEEDED) {
+                        waitingDialog.dismiss();
+                        Snackbar.make(drawer, "Update information successfully!", Snackbar.LENGTH_SHORT).show();
+                    } else if (status == AvatarUploadManager.Status.FAILED) {
+                        waitingDialog.dismiss();
+                        Snackbar.make(drawer, "" + uploadManager.getLastError().getMessage(), Snackbar.LENGTH_SHORT).show();
+                    }
+                    return Observable.<Integer>empty();
+                })
+                .subscribe(percent -> waitingDialog.setMessage(getString(R.string.uploading_progress, percent))));
+        uploadManager.resumeIfPending();
+    }
+}
@@ -1,11 +1,11 @@
 package com.developer.uberjava;
 
-import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 
 import android.annotation.SuppressLint;
+import android.content.Context;
 import android.content.Intent;
 import android.os.Bundle;
 import android.text.TextUtils;
@@ -15,8 +15,12 @@ import android.view.View;
 import android.widget.Button;
 import android.widget.Toast;
 
+import com.developer.uberjava.avatar.AvatarLoader;
 import com.developer.uberjava.databinding.ActivitySplashScreenBinding;
 import com.developer.uberjava.models.DriverInfoModel;
+import com.developer.uberjava.models.DriverInfoModelCodec;
+import com.developer.uberjava.profile.DriverProfileStore;
+import com.developer.uberjava.utils.StartupTrace;
 import com.developer.uberjava.utils.UserUtils;
 import com.firebase.ui.auth.AuthMethodPickerLayout;
 import com.firebase.ui.auth.AuthUI;
@@ -26,20 +30,18 @@ import com.google.android.gms.tasks.OnSuccessListener;
 import com.google.android.material.textfield.TextInputEditText;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
-import com.google.firebase.database.DataSnapshot;
-import com.google.firebase.database.DatabaseError;
 import com.google.firebase.database.DatabaseReference;
 import com.google.firebase.database.FirebaseDatabase;
-import com.google.firebase.database.ValueEventListener;
 import com.google.firebase.iid.FirebaseInstanceId;
 import com.google.firebase.iid.InstanceIdResult;
 
 import java.util.Collections;
 import java.util.List;
-import java.util.concurrent.TimeUnit;
 
-import io.reactivex.Completable;
-import io.reactivex.android.schedulers.AndroidSchedulers;
+import io.reactivex.Maybe;
+import io.reactivex.Observable;
+import io.reactivex.Single;
+import io.reactivex.disposables.CompositeDisposable;
 
 public class SplashScreenActivity extends AppCompatActivity {
 
@@ -49,13 +51,16 @@ public class SplashScreenActivity extends AppCompatActivity {
     private List<AuthUI.IdpConfig> providerGoogle;
     private List<AuthUI.IdpConfig> providerPhone;
     private FirebaseAuth firebaseAuth;
-    private FirebaseAuth.AuthStateListener listener;
+    private final CompositeDisposable compositeDisposable = new CompositeDisposable();
+    private Single<String> tokenFetch;
+    private DriverProfileStore profileStore;
     FirebaseDatabase database;
     DatabaseReference driverInfoRef;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        StartupTrace.mark("splash");
         binding = ActivitySplashScreenBinding.inflate(getLayoutInflater());
         setContentView(binding.getRoot());
         init();
@@ -70,47 +75,80 @@ public class SplashScreenActivity extends AppCompatActivity {
         providerPhone = Collections.singletonList(new AuthUI.IdpConfig.PhoneBuilder().build());
 
         firebaseAuth = FirebaseAuth.getInstance();
-        listener = myFirebaseAuth -> {
-            FirebaseUser user = myFirebaseAuth.getCurrentUser();
-            if (user != null) {
-
-                //update token
-                FirebaseInstanceId.getInstance().getInstanceId()
-                        .addOnFailureListener(e -> Toast.makeText(SplashScreenActivity.this,e.getMessage(),Toast.LENGTH_SHORT).show()).addOnSuccessListener(instanceIdResult -> {
-                            Log.d("TOKEN",instanceIdResult.getToken());
-                            UserUtils.updateToken(SplashScreenActivity.this,instanceIdResult.getToken());
-                        });
+        profileStore = DriverProfileStore.getInstance(this);
 
-                checkUserFromFirebase();
-            } else {
-                showLoginLayout();
-            }
-        };
+        //The token doesn't depend on who is signed in, start fetching it right away
+        tokenFetch = fetchToken().cache();
+        compositeDisposable.add(tokenFetch.subscribe(token -> StartupTrace.mark("token"),
+                e -> Log.e("TOKEN", "" + e.getMessage())));
     }
 
-    private void checkUserFromFirebase() {
-        driverInfoRef.child(FirebaseAuth.getInstance().getCurrentUser().getUid())
-                .addListenerForSingleValueEvent(new ValueEventListener() {
-                    @Override
-                    public void onDataChange(@NonNull DataSnapshot snapshot) {
-                        if (snapshot.exists()) {
-//                            Toast.makeText(SplashScreenActivity.this, "User already registered", Toast.LENGTH_SHORT).show();
-                            DriverInfoModel model = snapshot.getValue(DriverInfoModel.class);
-                            goToHomeActivity(model);
-                        } else {
-                            showRegisterLayout();
-                        }
-                    }
+    private void startUp() {
+
+        binding.progressBar.setVisibility(View.VISIBLE);
 
-                    @Override
-                    public void onCancelled(@NonNull DatabaseError error) {
-                        Toast.makeText(SplashScreenActivity.this, "" + error.getMessage(), Toast.LENGTH_SHORT).show();
+        //Auth, token and profile run concurrently, we leave as soon as the profile is known
+        compositeDisposable.add(signedInUid()
+                .switchMapMaybe(uid -> {
+                    StartupTrace.mark("auth");
+                    if (uid.isEmpty()) {
+                        showLoginLayout();
+                        return Maybe.<DriverInfoModel>empty();
                     }
-                });
+                    updateTokenWhenReady();
+                    return checkUserFromFirebase(uid)
+                            .doOnSuccess(model -> {
+                                StartupTrace.mark("profile");
+                                //Warm the header avatar while home inflates
+                                AvatarLoader.prefetch(this, model.getAvatar());
+                            })
+                            .doOnComplete(this::showRegisterLayout);
+                })
+                .subscribe(this::goToHomeActivity,
+                        throwable -> Toast.makeText(SplashScreenActivity.this, "" + throwable.getMessage(), Toast.LENGTH_SHORT).show()));
+    }
+
+    //Emits the uid, or "" when signed out. A persisted session is known synchronously so the
+    //profile read doesn't have to wait for the first AuthStateListener callback.
+    private Observable<String> signedInUid() {
+        return Observable.<String>create(emitter -> {
+            FirebaseAuth.AuthStateListener listener = myFirebaseAuth -> emitter.onNext(uidOf(myFirebaseAuth.getCurrentUser()));
+            emitter.onNext(uidOf(firebaseAuth.getCurrentUser()));
+            firebaseAuth.addAuthStateListener(listener);
+            emitter.setCancellable(() -> firebaseAuth.removeAuthStateListener(listener));
+        }).distinctUntilChanged();
+    }
+
+    private static String uidOf(FirebaseUser user) {
+        return user != null ? user.getUid() : "";
+    }
+
+    private Single<String> fetchToken() {
+        return Single.create(emitter -> FirebaseInstanceId.getInstance().getInstanceId()
+                .addOnFailureListener(emitter::tryOnError)
+                .addOnSuccessListener(instanceIdResult -> emitter.onSuccess(instanceIdResult.getToken())));
+    }
+
+    //Not tied to this screen, the write still has to land after we've moved on to home
+    @SuppressLint("CheckResult")
+    private void updateTokenWhenReady() {
+        Context context = getApplicationContext();
+        tokenFetch.subscribe(token -> {
+            Log.d("TOKEN", token);
+            UserUtils.updateToken(context, token);
+        }, e -> Toast.makeText(context, e.getMessage(), Toast.LENGTH_SHORT).show());
+    }
+
+    //A cached profile gets us home without touching the network, home revalidates it
+    private Maybe<DriverInfoModel> checkUserFromFirebase(String uid) {
+        return profileStore.getCached(uid)
+                .doOnSuccess(model -> StartupTrace.mark("profile_cached"))
+                .switchIfEmpty(profileStore.fetch(uid));
     }
 
     private void goToHomeActivity(DriverInfoModel model) {
         Common.currentUser = model;
+        StartupTrace.mark("home_intent");
         startActivity(new Intent(SplashScreenActivity.this, DriverHomeActivity.class));
         finish();
     }
@@ -149,7 +187,7 @@ public class SplashScreenActivity extends AppCompatActivity {
                 model.setRating(0.0);
 
                 driverInfoRef.child(FirebaseAuth.getInstance().getCurrentUser().getUid())
-                        .setValue(model)
+                        .setValue(DriverInfoModelCodec.encode(model))
                         .addOnFailureListener(e -> {
                             alertDialog.dismiss();
                             Toast.makeText(SplashScreenActivity.this, e.getMessage(), Toast.LENGTH_SHORT).show();
@@ -157,6 +195,7 @@ public class SplashScreenActivity extends AppCompatActivity {
                         .addOnSuccessListener(aVoid -> {
                             Toast.makeText(SplashScreenActivity.this, "Register successfully", Toast.LENGTH_SHORT).show();
                             alertDialog.dismiss();
+                            profileStore.put(FirebaseAuth.getInstance().getCurrentUser().getUid(), model);
                             goToHomeActivity(model);
                         });
             }
@@ -182,15 +221,6 @@ public class SplashScreenActivity extends AppCompatActivity {
 
     }
 
-    @SuppressLint("CheckResult")
-    private void delaySplashScreen() {
-
-        binding.progressBar.setVisibility(View.VISIBLE);
-
-        Completable.timer(5, TimeUnit.SECONDS, AndroidSchedulers.mainThread())
-                .subscribe(() -> firebaseAuth.addAuthStateListener(listener));
-    }
-
     @Override
     protected void onActivityResult(int requestCode, int resultCode, @Nullable Intent data) {
         super.onActivityResult(requestCode, resultCode, data);
@@ -210,14 +240,12 @@ public class SplashScreenActivity extends AppCompatActivity {
     @Override
     protected void onStart() {
         super.onStart();
-        delaySplashScreen();
+        startUp();
     }
 
     @Override
     protected void onStop() {
-        if (firebaseAuth != null && listener != null) {
-            firebaseAuth.removeAuthStateListener(listener);
-        }
+        compositeDisposable.clear();
         super.onStop();
     }
 }
\ No newline at end of file
@@ -0,0 +1,42 @@
+package com.developer.uberjava.avatar;
+
+import android.content.Context;
+import android.graphics.drawable.Drawable;
+import android.text.TextUtils;
+import android.widget.ImageView;
+
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.RequestBuilder;
+import com.bumptech.glide.load.engine.DiskCacheStrategy;
+import com.developer.uberjava.R;
+
+//One request shape for the header avatar so the splash prefetch and the drawer hit the same
+//memory and disk cache entries. The URL is the cache key and carries the upload generation.
+public class AvatarLoader {
+
+    public static void load(ImageView imageView, String avatarUrl) {
+        if (TextUtils.isEmpty(avatarUrl)) {
+            return;
+        }
+        request(imageView.getContext(), avatarUrl).into(imageView);
+    }
+
+    public static void prefetch(Context context, String avatarUrl) {
+        if (TextUtils.isEmpty(avatarUrl)) {
+            return;
+        }
+        int size = context.getResources().getDimensionPixelSize(R.dimen.avatar_size);
+        request(context.getApplicationContext(), avatarUrl).preload(size, size);
+    }
+
+    private static RequestBuilder<Drawable> request(Context context, String avatarUrl) {
+        int size = context.getResources().getDimensionPixelSize(R.dimen.avatar_size);
+        //Keep the decoded 80dp bitmap on disk, not the source, so opening the drawer never decodes the full image
+        return Glide.with(context)
+                .load(avatarUrl)
+                .override(size)
+                .centerCrop()
+                .diskCacheStrategy(DiskCacheStrategy.RESOURCE)
+                .dontAnimate();
+    }
+}
@@ -0,0 +1,118 @@
+package com.developer.uberjava.avatar;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Matrix;
+import android.net.Uri;
+import android.os.Build;
+
+import androidx.exifinterface.media.ExifInterface;
+
+import com.developer.uberjava.Common;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import io.reactivex.Single;
+
+//Turns a gallery pick (often a 4000px multi-MB JPEG) into an upright AVATAR_UPLOAD_SIZE_PX
+//image re-encoded at AVATAR_UPLOAD_QUALITY. Run it off the main thread, it decodes and writes a file.
+public class AvatarPreparer {
+
+    public static final String FILE_NAME = "avatar_upload";
+
+    public static Single<File> prepare(Context context, Uri source) {
+        Context appContext = context.getApplicationContext();
+        return Single.fromCallable(() -> prepareBlocking(appContext, source));
+    }
+
+    public static String getContentType() {
+        return Common.AVATAR_UPLOAD_WEBP ? "image/webp" : "image/jpeg";
+    }
+
+    private static File prepareBlocking(Context context, Uri source) throws IOException {
+        ContentResolver resolver = context.getContentResolver();
+        int rotation = readRotation(resolver, source);
+
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        try (InputStream in = open(resolver, source)) {
+            BitmapFactory.decodeStream(in, null, options);
+        }
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            throw new IOException("Unsupported image");
+        }
+
+        //Power of two keeps the shorter side at or above the target, the rest is a cheap scale
+        int target = Common.AVATAR_UPLOAD_SIZE_PX;
+        int shortSide = Math.min(options.outWidth, options.outHeight);
+        int sampleSize = 1;
+        while (shortSide / (sampleSize * 2) >= target) {
+            sampleSize *= 2;
+        }
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = sampleSize;
+        options.inPreferredConfig = Bitmap.Config.ARGB_8888;
+        Bitmap decoded;
+        try (InputStream in = open(resolver, source)) {
+            decoded = BitmapFactory.decodeStream(in, null, options);
+        }
+        if (decoded == null) {
+            throw new IOException("Unable to decode image");
+        }
+
+        Bitmap prepared = decoded;
+        float scale = Math.min(1f, (float) target / Math.min(decoded.getWidth(), decoded.getHeight()));
+        if (scale < 1f || rotation != 0) {
+            Matrix matrix = new Matrix();
+            matrix.postScale(scale, scale);
+            matrix.postRotate(rotation);
+            prepared = Bitmap.createBitmap(decoded, 0, 0, decoded.getWidth(), decoded.getHeight(), matrix, true);
+            if (prepared != decoded) {
+                decoded.recycle();
+            }
+        }
+
+        //Not the cache dir, a resumed upload after process death still needs the file
+        File output = new File(context.getFilesDir(), FILE_NAME);
+        try (OutputStream out = new FileOutputStream(output)) {
+            if (!prepared.compress(compressFormat(), Common.AVATAR_UPLOAD_QUALITY, out)) {
+                throw new IOException("Unable to encode image");
+            }
+        } finally {
+            prepared.recycle();
+        }
+        return output;
+    }
+
+    private static int readRotation(ContentResolver resolver, Uri source) {
+        try (InputStream in = open(resolver, source)) {
+            return new ExifInterface(in).getRotationDegrees();
+        } catch (IOException e) {
+            //No EXIF is the normal case for screenshots and PNGs
+            return 0;
+        }
+    }
+
+    @SuppressWarnings("deprecation")
+    private static Bitmap.CompressFormat compressFormat() {
+        if (!Common.AVATAR_UPLOAD_WEBP) {
+            return Bitmap.CompressFormat.JPEG;
+        }
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.R ? Bitmap.CompressFormat.WEBP_LOSSY : Bitmap.CompressFormat.WEBP;
+    }
+
+    private static InputStream open(ContentResolver resolver, Uri source) throws IOException {
+        InputStream in = resolver.openInputStream(source);
+        if (in == null) {
+            throw new FileNotFoundException(source.toString());
+        }
+        return in;
+    }
+}
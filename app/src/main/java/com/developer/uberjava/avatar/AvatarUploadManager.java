@@ -0,0 +1,199 @@
+package com.developer.uberjava.avatar;
+
+import android.annotation.SuppressLint;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.net.Uri;
+import android.util.Log;
+
+import com.developer.uberjava.Common;
+import com.developer.uberjava.models.DriverInfoModel;
+import com.developer.uberjava.models.DriverInfoModelCodec;
+import com.developer.uberjava.profile.ProfileSync;
+import com.google.android.gms.tasks.Task;
+import com.google.firebase.storage.FirebaseStorage;
+import com.google.firebase.storage.StorageException;
+import com.google.firebase.storage.StorageMetadata;
+import com.google.firebase.storage.StorageReference;
+import com.google.firebase.storage.UploadTask;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Observable;
+import io.reactivex.android.schedulers.AndroidSchedulers;
+import io.reactivex.subjects.BehaviorSubject;
+
+//Owns the avatar upload outside of any screen. The prepared file and the Storage session URI
+//are persisted, so after process death resumeIfPending() continues from the last committed
+//chunk instead of starting over. Once uploaded the avatar URL goes through ProfileSync.
+public class AvatarUploadManager {
+
+    public enum Status {IDLE, UPLOADING, SUCCEEDED, FAILED}
+
+    private static final String TAG = "AvatarUploadManager";
+    private static final String PREFS_NAME = "avatar_upload";
+    private static final String KEY_UID = "uid";
+    private static final String KEY_FILE = "file";
+    private static final String KEY_SESSION_URI = "sessionUri";
+
+    private static AvatarUploadManager instance;
+
+    public static synchronized AvatarUploadManager getInstance(Context context) {
+        if (instance == null) {
+            instance = new AvatarUploadManager(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private final Context context;
+    private final SharedPreferences preferences;
+    private final StorageReference storageReference;
+    private final BehaviorSubject<Status> status = BehaviorSubject.createDefault(Status.IDLE);
+    private UploadTask uploadTask;
+    private boolean sessionPersisted;
+    private Exception lastError;
+    //Written by the progress listener, sampled by progressPercent()
+    private volatile long bytesTransferred;
+    private volatile long totalBytes;
+
+    private AvatarUploadManager(Context context) {
+        this.context = context;
+        preferences = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        storageReference = FirebaseStorage.getInstance().getReference();
+    }
+
+    public synchronized void start(String uid, File file) {
+        if (uploadTask != null) {
+            uploadTask.cancel();
+        }
+        preferences.edit()
+                .putString(KEY_UID, uid)
+                .putString(KEY_FILE, file.getAbsolutePath())
+                .remove(KEY_SESSION_URI)
+                .apply();
+        upload(uid, file, null);
+    }
+
+    public synchronized void resumeIfPending() {
+        if (uploadTask != null) {
+            return;
+        }
+        String uid = preferences.getString(KEY_UID, null);
+        String path = preferences.getString(KEY_FILE, null);
+        if (uid == null || path == null) {
+            return;
+        }
+        File file = new File(path);
+        if (!file.exists()) {
+            clearPending();
+            return;
+        }
+        String sessionUri = preferences.getString(KEY_SESSION_URI, null);
+        upload(uid, file, sessionUri != null ? Uri.parse(sessionUri) : null);
+    }
+
+    public Observable<Status> status() {
+        return status;
+    }
+
+    public synchronized Exception getLastError() {
+        return lastError;
+    }
+
+    //Sampled at AVATAR_UPLOAD_PROGRESS_INTERVAL_MS however often Storage reports progress
+    public Observable<Integer> progressPercent() {
+        return Observable.interval(0, Common.AVATAR_UPLOAD_PROGRESS_INTERVAL_MS, TimeUnit.MILLISECONDS, AndroidSchedulers.mainThread())
+                .map(tick -> {
+                    long total = totalBytes;
+                    return total > 0 ? (int) (100 * bytesTransferred / total) : 0;
+                })
+                .distinctUntilChanged();
+    }
+
+    private void upload(String uid, File file, Uri sessionUri) {
+        StorageReference avatarRef = storageReference.child("avatars/" + uid);
+        StorageMetadata metadata = new StorageMetadata.Builder()
+                .setContentType(AvatarPreparer.getContentType())
+                .build();
+        bytesTransferred = 0;
+        totalBytes = file.length();
+        sessionPersisted = sessionUri != null;
+        status.onNext(Status.UPLOADING);
+
+        UploadTask task = sessionUri != null
+                ? avatarRef.putFile(Uri.fromFile(file), metadata, sessionUri)
+                : avatarRef.putFile(Uri.fromFile(file), metadata);
+        uploadTask = task;
+        task.addOnProgressListener(snapshot -> {
+            bytesTransferred = snapshot.getBytesTransferred();
+            totalBytes = snapshot.getTotalByteCount();
+            if (!sessionPersisted && snapshot.getUploadSessionUri() != null) {
+                sessionPersisted = true;
+                preferences.edit().putString(KEY_SESSION_URI, snapshot.getUploadSessionUri().toString()).apply();
+            }
+        }).addOnCompleteListener(result -> onUploadComplete(task, uid, avatarRef, file, result));
+    }
+
+    @SuppressLint("CheckResult")
+    private synchronized void onUploadComplete(UploadTask task, String uid, StorageReference avatarRef, File file,
+                                               Task<UploadTask.TaskSnapshot> result) {
+        if (task != uploadTask) {
+            //Replaced by a newer start()
+            return;
+        }
+        uploadTask = null;
+        if (result.isCanceled()) {
+            status.onNext(Status.IDLE);
+            return;
+        }
+        if (!result.isSuccessful()) {
+            Exception error = result.getException();
+            Log.e(TAG, "" + (error != null ? error.getMessage() : null));
+            //A 4xx means the session is gone server-side, the next attempt starts from zero
+            if (error instanceof StorageException) {
+                int httpCode = ((StorageException) error).getHttpResultCode();
+                if (httpCode >= 400 && httpCode < 500) {
+                    preferences.edit().remove(KEY_SESSION_URI).apply();
+                }
+            }
+            fail(error);
+            return;
+        }
+        //Every upload overwrites avatars/<uid>, the generation makes each version its own URL
+        //so ProfileSync sees a change and image caches keyed by URL never serve the old one
+        StorageMetadata uploaded = result.getResult().getMetadata();
+        String generation = uploaded != null && uploaded.getGeneration() != null ? uploaded.getGeneration() : String.valueOf(System.currentTimeMillis());
+        avatarRef.getDownloadUrl()
+                .addOnSuccessListener(uri -> {
+                    String avatarUrl = uri.buildUpon().appendQueryParameter("v", generation).build().toString();
+                    //Diffed against the known profile, or an empty one, so only avatar is written
+                    DriverInfoModel before = Common.currentUser != null ? Common.currentUser : new DriverInfoModel();
+                    DriverInfoModel after = DriverInfoModelCodec.copy(before);
+                    after.setAvatar(avatarUrl);
+                    clearPending();
+                    //noinspection ResultOfMethodCallIgnored
+                    file.delete();
+                    //Succeeded only once DriverInfo holds the new URL
+                    ProfileSync.getInstance(context).updateProfile(uid, before, after)
+                            .subscribe(() -> {
+                                status.onNext(Status.SUCCEEDED);
+                                status.onNext(Status.IDLE);
+                            }, e -> fail(e instanceof Exception ? (Exception) e : new Exception(e)));
+                })
+                .addOnFailureListener(e -> {
+                    clearPending();
+                    fail(e);
+                });
+    }
+
+    private synchronized void fail(Exception error) {
+        lastError = error != null ? error : new Exception("Avatar upload failed");
+        status.onNext(Status.FAILED);
+        status.onNext(Status.IDLE);
+    }
+
+    private void clearPending() {
+        preferences.edit().clear().apply();
+    }
+}
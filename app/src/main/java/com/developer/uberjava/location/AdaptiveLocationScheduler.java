@@ -0,0 +1,76 @@
+package com.developer.uberjava.location;
+
+import android.annotation.SuppressLint;
+import android.location.Location;
+import android.os.Looper;
+import android.util.Log;
+
+import com.google.android.gms.location.FusedLocationProviderClient;
+import com.google.android.gms.location.LocationCallback;
+import com.google.android.gms.location.LocationRequest;
+import com.google.android.gms.location.LocationResult;
+
+//Owns requestLocationUpdates and re-issues it whenever the selected LocationProfile changes
+public class AdaptiveLocationScheduler {
+
+    private static final String TAG = "LocationScheduler";
+
+    private final FusedLocationProviderClient fusedLocationProviderClient;
+    private final LocationProfileSelector selector = new LocationProfileSelector();
+    private final LocationRequest locationRequest = new LocationRequest();
+    private LocationCallback delegate;
+    private LocationProfile requestedProfile;
+
+    private final LocationCallback locationCallback = new LocationCallback() {
+        @Override
+        public void onLocationResult(LocationResult locationResult) {
+            for (Location location : locationResult.getLocations()) {
+                selector.onFix(location.getLatitude(), location.getLongitude(),
+                        location.hasSpeed() ? location.getSpeed() : Double.NaN, location.getTime());
+            }
+            if (delegate != null) {
+                delegate.onLocationResult(locationResult);
+            }
+            applyProfile(selector.getProfile());
+        }
+    };
+
+    public AdaptiveLocationScheduler(FusedLocationProviderClient fusedLocationProviderClient) {
+        this.fusedLocationProviderClient = fusedLocationProviderClient;
+    }
+
+    public void start(LocationCallback callback) {
+        delegate = callback;
+        requestedProfile = null;
+        applyProfile(selector.getProfile());
+    }
+
+    public void stop() {
+        delegate = null;
+        requestedProfile = null;
+        fusedLocationProviderClient.removeLocationUpdates(locationCallback);
+    }
+
+    public LocationProfile getProfile() {
+        return selector.getProfile();
+    }
+
+    //Callers check the location permission before start()
+    @SuppressLint("MissingPermission")
+    private void applyProfile(LocationProfile profile) {
+        if (delegate == null || profile == requestedProfile) {
+            return;
+        }
+        Log.d(TAG, "Switching location profile to " + profile);
+        requestedProfile = profile;
+        locationRequest.setInterval(profile.intervalMillis);
+        locationRequest.setFastestInterval(profile.fastestIntervalMillis);
+        locationRequest.setSmallestDisplacement(profile.smallestDisplacementMeters);
+        locationRequest.setPriority(profile.highAccuracy
+                ? LocationRequest.PRIORITY_HIGH_ACCURACY
+                : LocationRequest.PRIORITY_BALANCED_POWER_ACCURACY);
+        locationRequest.setMaxWaitTime(profile.maxWaitMillis);
+        //Re-requesting with the same callback replaces the previous request
+        fusedLocationProviderClient.requestLocationUpdates(locationRequest, locationCallback, Looper.getMainLooper());
+    }
+}
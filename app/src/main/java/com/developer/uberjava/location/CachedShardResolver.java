@@ -0,0 +1,60 @@
+package com.developer.uberjava.location;
+
+import com.developer.uberjava.utils.GeoHash;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+//LRU in front of a slow ShardResolver, keyed by the geohash cell of the position, so a driver
+//moving around inside one cell only pays for the first lookup
+public class CachedShardResolver implements ShardResolver {
+
+    private final ShardResolver delegate;
+    private final int cellPrecision;
+    private final Map<Long, String> cache;
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+
+    public CachedShardResolver(ShardResolver delegate, int cellPrecision, int cacheSize) {
+        this.delegate = delegate;
+        this.cellPrecision = cellPrecision;
+        this.cache = new LinkedHashMap<Long, String>(cacheSize, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, String> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+    @Override
+    public String resolve(double latitude, double longitude) throws Exception {
+        long cell = GeoHash.encode(latitude, longitude, cellPrecision);
+        String shardName = getCached(cell);
+        if (shardName != null) {
+            hitCount.incrementAndGet();
+            return shardName;
+        }
+        missCount.incrementAndGet();
+        shardName = delegate.resolve(latitude, longitude);
+        synchronized (cache) {
+            cache.put(cell, shardName);
+        }
+        return shardName;
+    }
+
+    private String getCached(long cell) {
+        synchronized (cache) {
+            return cache.get(cell);
+        }
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+}
@@ -0,0 +1,82 @@
+package com.developer.uberjava.location;
+
+import android.content.Context;
+import android.location.Address;
+import android.location.Geocoder;
+import android.text.TextUtils;
+import android.util.Log;
+
+import com.developer.uberjava.Common;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class CityGeocoder implements ShardResolver {
+
+    private static final String TAG = "CityGeocoder";
+
+    private final Geocoder geocoder;
+    private final CachedShardResolver cache = new CachedShardResolver(this::lookup,
+            Common.CITY_CELL_PRECISION, Common.CITY_CACHE_SIZE);
+
+    private final AtomicLong lookupCount = new AtomicLong();
+    private final AtomicLong lookupNanos = new AtomicLong();
+    private final AtomicLong maxLookupNanos = new AtomicLong();
+
+    public CityGeocoder(Context context) {
+        geocoder = new Geocoder(context.getApplicationContext(), Locale.getDefault());
+    }
+
+    //Blocks on the platform Geocoder on a cache miss, so never call it on the main thread
+    @Override
+    public String resolve(double latitude, double longitude) throws Exception {
+        return cache.resolve(latitude, longitude);
+    }
+
+    private String lookup(double latitude, double longitude) throws IOException {
+        long start = System.nanoTime();
+        try {
+            List<Address> addressList = geocoder.getFromLocation(latitude, longitude, 1);
+            if (addressList == null || addressList.isEmpty() || TextUtils.isEmpty(addressList.get(0).getLocality())) {
+                throw new IOException("Unable to resolve city for this location");
+            }
+            return addressList.get(0).getLocality();
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            lookupCount.incrementAndGet();
+            lookupNanos.addAndGet(elapsed);
+            long max;
+            while (elapsed > (max = maxLookupNanos.get()) && !maxLookupNanos.compareAndSet(max, elapsed)) {
+            }
+            Log.d(TAG, getStats());
+        }
+    }
+
+    public long getHitCount() {
+        return cache.getHitCount();
+    }
+
+    public long getMissCount() {
+        return cache.getMissCount();
+    }
+
+    public long getAverageLookupMillis() {
+        long count = lookupCount.get();
+        return count == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(lookupNanos.get() / count);
+    }
+
+    public long getMaxLookupMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(maxLookupNanos.get());
+    }
+
+    public String getStats() {
+        return new StringBuilder("hits=").append(getHitCount())
+                .append(" misses=").append(getMissCount())
+                .append(" lookups=").append(lookupCount.get())
+                .append(" avgMs=").append(getAverageLookupMillis())
+                .append(" maxMs=").append(getMaxLookupMillis()).toString();
+    }
+}
@@ -0,0 +1,109 @@
+package com.developer.uberjava.location;
+
+import com.developer.uberjava.Common;
+import com.firebase.geofire.GeoFire;
+import com.firebase.geofire.GeoLocation;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.FirebaseDatabase;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import io.reactivex.Completable;
+import io.reactivex.subjects.CompletableSubject;
+
+public class DriverLocationPublisher {
+
+    private static class Shard {
+        final DatabaseReference driversLocationRef;
+        final DatabaseReference currentUserRef;
+        final GeoFire geoFire;
+
+        Shard(DatabaseReference driversLocationRef, String uid) {
+            this.driversLocationRef = driversLocationRef;
+            this.currentUserRef = driversLocationRef.child(uid);
+            this.geoFire = new GeoFire(driversLocationRef);
+        }
+    }
+
+    private final String uid;
+    private final DatabaseReference rootRef;
+    private final Map<String, Shard> shards = new HashMap<>();
+    private String currentShardName;
+    private Shard currentShard;
+    private boolean removed;
+
+    public DriverLocationPublisher(String uid) {
+        this.uid = uid;
+        this.rootRef = FirebaseDatabase.getInstance().getReference(Common.DRIVERS_LOCATION_REFERENCES);
+    }
+
+    //Returns true when the driver moved to another shard, so callers can re-arm presence on the new ref.
+    //Called from the pipeline's io thread, the refs are read back on the main thread.
+    public synchronized boolean publish(String shardName, double latitude, double longitude, GeoFire.CompletionListener listener) {
+        if (removed) {
+            //A fix still in the pipeline must not put the driver back after remove()
+            return false;
+        }
+        boolean changed = !shardName.equals(currentShardName);
+        if (changed) {
+            if (currentShard != null) {
+                //Don't leave a stale entry behind under the old city
+                currentShard.currentUserRef.onDisconnect().cancel();
+                currentShard.geoFire.removeLocation(uid);
+            }
+            Shard shard = shards.get(shardName);
+            if (shard == null) {
+                shard = new Shard(rootRef.child(shardName), uid);
+                shards.put(shardName, shard);
+            }
+            currentShardName = shardName;
+            currentShard = shard;
+        }
+        currentShard.geoFire.setLocation(uid, new GeoLocation(latitude, longitude), listener);
+        return changed;
+    }
+
+    public synchronized DatabaseReference getCurrentUserRef() {
+        return currentShard != null ? currentShard.currentUserRef : null;
+    }
+
+    public synchronized String getCurrentShardName() {
+        return currentShardName;
+    }
+
+    public String getUid() {
+        return uid;
+    }
+
+    //Deletes the entry on the current shard and stops publishing, completes once the server acked it.
+    //Sign-out waits on this so the delete still carries the driver's auth.
+    public synchronized Completable remove() {
+        removed = true;
+        Shard shard = currentShard;
+        currentShardName = null;
+        currentShard = null;
+        if (shard == null) {
+            return Completable.complete();
+        }
+        shard.currentUserRef.onDisconnect().cancel();
+        //Issued right away, subscribing only waits for the ack
+        CompletableSubject acked = CompletableSubject.create();
+        shard.geoFire.removeLocation(uid, (key, error) -> {
+            if (error != null) {
+                acked.onError(error.toException());
+            } else {
+                acked.onComplete();
+            }
+        });
+        return acked.hide();
+    }
+
+    public synchronized void stop() {
+        if (currentShard != null) {
+            currentShard.geoFire.removeLocation(uid);
+        }
+        currentShardName = null;
+        currentShard = null;
+    }
+}
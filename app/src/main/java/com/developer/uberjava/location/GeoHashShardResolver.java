@@ -0,0 +1,35 @@
+package com.developer.uberjava.location;
+
+import com.developer.uberjava.utils.GeoHash;
+
+public class GeoHashShardResolver implements ShardResolver {
+
+    private final int precision;
+    private final char[] buffer;
+    private long lastCell = -1;
+    private String lastShardName;
+
+    public GeoHashShardResolver(int precision) {
+        if (precision < 1 || precision > GeoHash.MAX_PRECISION) {
+            throw new IllegalArgumentException("Precision must be between 1 and " + GeoHash.MAX_PRECISION);
+        }
+        this.precision = precision;
+        this.buffer = new char[precision];
+    }
+
+    //Only allocates a new String when the driver crosses into another cell
+    @Override
+    public String resolve(double latitude, double longitude) {
+        long cell = GeoHash.encode(latitude, longitude, precision);
+        if (cell != lastCell) {
+            GeoHash.writeBase32(cell, precision, buffer);
+            lastShardName = new String(buffer);
+            lastCell = cell;
+        }
+        return lastShardName;
+    }
+
+    public int getPrecision() {
+        return precision;
+    }
+}
@@ -0,0 +1,142 @@
+package com.developer.uberjava.location;
+
+import com.developer.uberjava.Common;
+
+//Constant-velocity Kalman filter over fixes, one independent [position, velocity] filter per
+//axis in meters on a local plane around the first fix. The reported accuracy is the measurement
+//noise, so a 50m urban canyon fix barely moves the estimate while a 5m one pulls it hard.
+//A fix that would need an impossible speed is dropped; after a run of those the filter assumes
+//it is the estimate that is wrong (tunnel exit, cold start) and restarts on the new fix.
+//State is all primitives, one instance per stream.
+public class KalmanLocationFilter {
+
+    private static final double METERS_PER_DEGREE = 111320.0;
+    //A fresh filter knows nothing about the velocity, (30 m/s)^2 lets the first fixes set it
+    private static final double INITIAL_VELOCITY_VARIANCE = 900;
+    //1e-7 degrees is ~1cm, far below GPS noise, and keeps the JSON GeoFire sends short
+    private static final double COORDINATE_SCALE = 1e7;
+
+    private final double accelerationVariance;
+    private final double maxSpeedMetersPerSecond;
+    private final int maxConsecutiveRejects;
+    private final long resetGapMillis;
+
+    private boolean initialized;
+    private double originLatitude, originLongitude, metersPerDegreeLongitude;
+    private long lastTimeMillis;
+    private int consecutiveRejects;
+    private long rejectedCount;
+    //Per axis: position, velocity and the symmetric covariance p00, p01, p11
+    private double x, vx, xp00, xp01, xp11;
+    private double y, vy, yp00, yp01, yp11;
+
+    public KalmanLocationFilter() {
+        this(Common.SMOOTHING_ACCELERATION_NOISE, Common.SMOOTHING_MAX_SPEED_MPS,
+                Common.SMOOTHING_MAX_CONSECUTIVE_REJECTS, Common.SMOOTHING_RESET_GAP_MS);
+    }
+
+    public KalmanLocationFilter(double accelerationNoise, double maxSpeedMetersPerSecond,
+                                int maxConsecutiveRejects, long resetGapMillis) {
+        this.accelerationVariance = accelerationNoise * accelerationNoise;
+        this.maxSpeedMetersPerSecond = maxSpeedMetersPerSecond;
+        this.maxConsecutiveRejects = maxConsecutiveRejects;
+        this.resetGapMillis = resetGapMillis;
+    }
+
+    //The smoothed fix, or null when the fix was rejected as an outlier
+    public LocationFix filter(LocationFix fix) {
+        double variance = Math.max(1.0, (double) fix.getAccuracy() * fix.getAccuracy());
+        long elapsed = fix.getTimeMillis() - lastTimeMillis;
+        if (!initialized || elapsed > resetGapMillis || elapsed < 0) {
+            reset(fix, variance);
+            return toFix(fix);
+        }
+        double mx = (fix.getLongitude() - originLongitude) * metersPerDegreeLongitude;
+        double my = (fix.getLatitude() - originLatitude) * METERS_PER_DEGREE;
+        double dt = elapsed / 1000.0;
+
+        double jump = Math.hypot(mx - x, my - y) - fix.getAccuracy();
+        if (jump > maxSpeedMetersPerSecond * Math.max(dt, 1.0)) {
+            rejectedCount++;
+            if (++consecutiveRejects > maxConsecutiveRejects) {
+                reset(fix, variance);
+                return toFix(fix);
+            }
+            return null;
+        }
+        consecutiveRejects = 0;
+        lastTimeMillis = fix.getTimeMillis();
+
+        if (dt > 0) {
+            double dt2 = dt * dt;
+            double q00 = accelerationVariance * dt2 * dt2 / 4;
+            double q01 = accelerationVariance * dt2 * dt / 2;
+            double q11 = accelerationVariance * dt2;
+            x += vx * dt;
+            xp00 += dt * (2 * xp01 + dt * xp11) + q00;
+            xp01 += dt * xp11 + q01;
+            xp11 += q11;
+            y += vy * dt;
+            yp00 += dt * (2 * yp01 + dt * yp11) + q00;
+            yp01 += dt * yp11 + q01;
+            yp11 += q11;
+        }
+
+        double sx = xp00 + variance;
+        double kx0 = xp00 / sx;
+        double kx1 = xp01 / sx;
+        double rx = mx - x;
+        x += kx0 * rx;
+        vx += kx1 * rx;
+        xp11 -= kx1 * xp01;
+        xp00 *= 1 - kx0;
+        xp01 *= 1 - kx0;
+
+        double sy = yp00 + variance;
+        double ky0 = yp00 / sy;
+        double ky1 = yp01 / sy;
+        double ry = my - y;
+        y += ky0 * ry;
+        vy += ky1 * ry;
+        yp11 -= ky1 * yp01;
+        yp00 *= 1 - ky0;
+        yp01 *= 1 - ky0;
+
+        return toFix(fix);
+    }
+
+    public long getRejectedCount() {
+        return rejectedCount;
+    }
+
+    private void reset(LocationFix fix, double variance) {
+        initialized = true;
+        originLatitude = fix.getLatitude();
+        originLongitude = fix.getLongitude();
+        metersPerDegreeLongitude = METERS_PER_DEGREE * Math.cos(Math.toRadians(originLatitude));
+        lastTimeMillis = fix.getTimeMillis();
+        consecutiveRejects = 0;
+        x = 0;
+        y = 0;
+        vx = 0;
+        vy = 0;
+        xp00 = variance;
+        yp00 = variance;
+        xp01 = 0;
+        yp01 = 0;
+        xp11 = INITIAL_VELOCITY_VARIANCE;
+        yp11 = INITIAL_VELOCITY_VARIANCE;
+    }
+
+    //Heading from a near-zero velocity is noise, below the threshold it is reported as unknown
+    private LocationFix toFix(LocationFix fix) {
+        double speed = Math.hypot(vx, vy);
+        double bearing = speed >= Common.SMOOTHING_MIN_SPEED_FOR_BEARING_MPS
+                ? (Math.toDegrees(Math.atan2(vx, vy)) + 360) % 360
+                : Double.NaN;
+        float accuracy = (float) Math.min(fix.getAccuracy(), Math.sqrt(Math.max(xp00, yp00)));
+        double latitude = Math.round((originLatitude + y / METERS_PER_DEGREE) * COORDINATE_SCALE) / COORDINATE_SCALE;
+        double longitude = Math.round((originLongitude + x / metersPerDegreeLongitude) * COORDINATE_SCALE) / COORDINATE_SCALE;
+        return new LocationFix(latitude, longitude, accuracy, speed, bearing, fix.getTimeMillis(), fix.getReceivedAtNanos(), fix.getShardName());
+    }
+}
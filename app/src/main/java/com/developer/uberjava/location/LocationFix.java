@@ -0,0 +1,65 @@
+package com.developer.uberjava.location;
+
+//Platform-free copy of a fix so the pipeline stages can run on the JVM
+public class LocationFix {
+    private final double latitude, longitude;
+    private final float accuracy;
+    private final double speed, bearing;
+    private final long timeMillis;
+    private final long receivedAtNanos;
+    private final String shardName;
+
+    //speed and bearing are NaN when the provider did not report them
+    public LocationFix(double latitude, double longitude, float accuracy, double speed, double bearing, long timeMillis) {
+        this(latitude, longitude, accuracy, speed, bearing, timeMillis, System.nanoTime(), null);
+    }
+
+    public LocationFix(double latitude, double longitude, float accuracy, double speed, double bearing,
+                       long timeMillis, long receivedAtNanos, String shardName) {
+        this.latitude = latitude;
+        this.longitude = longitude;
+        this.accuracy = accuracy;
+        this.speed = speed;
+        this.bearing = bearing;
+        this.timeMillis = timeMillis;
+        this.receivedAtNanos = receivedAtNanos;
+        this.shardName = shardName;
+    }
+
+    public LocationFix withShardName(String shardName) {
+        return new LocationFix(latitude, longitude, accuracy, speed, bearing, timeMillis, receivedAtNanos, shardName);
+    }
+
+    public double getLatitude() {
+        return latitude;
+    }
+
+    public double getLongitude() {
+        return longitude;
+    }
+
+    public float getAccuracy() {
+        return accuracy;
+    }
+
+    public double getSpeed() {
+        return speed;
+    }
+
+    public double getBearing() {
+        return bearing;
+    }
+
+    public long getTimeMillis() {
+        return timeMillis;
+    }
+
+    //System.nanoTime() when the fix entered the app, for latency metrics
+    public long getReceivedAtNanos() {
+        return receivedAtNanos;
+    }
+
+    public String getShardName() {
+        return shardName;
+    }
+}
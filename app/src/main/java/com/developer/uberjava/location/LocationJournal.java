@@ -0,0 +1,182 @@
+package com.developer.uberjava.location;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.Map;
+
+//Fixed-size ring buffer of fixes taken while offline, kept in a memory-mapped file so it
+//survives process death. When full the oldest record is overwritten.
+public class LocationJournal implements Closeable {
+
+    public interface BatchWriter {
+        void write(Map<String, Object> updates, WriteCallback callback);
+    }
+
+    public interface WriteCallback {
+        void onComplete(boolean success);
+    }
+
+    private static final int MAGIC = 0x4C4A4E32; //"LJN2"
+    private static final int HEADER_SIZE = 24;
+    //timestamp(8) + lat(4) + lon(4) + accuracy(4) + speed(4)
+    static final int RECORD_SIZE = 24;
+    private static final double FIXED_POINT_SCALE = 1e7;
+
+    private static final int OFFSET_CAPACITY = 4;
+    private static final int OFFSET_HEAD = 8;
+    private static final int OFFSET_COUNT = 12;
+    private static final int OFFSET_HEAD_SEQUENCE = 16;
+
+    private final RandomAccessFile file;
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+    private int head, count;
+    //Sequence number of the record at head, each record keeps its number until it is dropped
+    private long headSequence;
+    private boolean draining;
+    private int overwrittenInFlight;
+
+    public LocationJournal(File path, int capacity) throws IOException {
+        file = new RandomAccessFile(path, "rw");
+        buffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) capacity * RECORD_SIZE);
+        head = buffer.getInt(OFFSET_HEAD);
+        count = buffer.getInt(OFFSET_COUNT);
+        headSequence = buffer.getLong(OFFSET_HEAD_SEQUENCE);
+        boolean valid = buffer.getInt(0) == MAGIC && buffer.getInt(OFFSET_CAPACITY) == capacity
+                && head >= 0 && head < capacity && count >= 0 && count <= capacity;
+        if (!valid) {
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(OFFSET_CAPACITY, capacity);
+            head = 0;
+            count = 0;
+            headSequence = 0;
+            writeHeader();
+        }
+        this.capacity = capacity;
+    }
+
+    public synchronized void append(long timestamp, double latitude, double longitude, float accuracy, float speed) {
+        int offset = recordOffset((head + count) % capacity);
+        buffer.putLong(offset, timestamp);
+        buffer.putInt(offset + 8, (int) Math.round(latitude * FIXED_POINT_SCALE));
+        buffer.putInt(offset + 12, (int) Math.round(longitude * FIXED_POINT_SCALE));
+        buffer.putFloat(offset + 16, accuracy);
+        buffer.putFloat(offset + 20, speed);
+        if (count == capacity) {
+            head = (head + 1) % capacity;
+            headSequence++;
+            overwrittenInFlight++;
+        } else {
+            count++;
+        }
+        writeHeader();
+    }
+
+    public synchronized int size() {
+        return count;
+    }
+
+    public synchronized boolean isEmpty() {
+        return count == 0;
+    }
+
+    public synchronized long getNewestTimestamp() {
+        return buffer.getLong(recordOffset(newestIndex()));
+    }
+
+    public synchronized double getNewestLatitude() {
+        return buffer.getInt(recordOffset(newestIndex()) + 8) / FIXED_POINT_SCALE;
+    }
+
+    public synchronized double getNewestLongitude() {
+        return buffer.getInt(recordOffset(newestIndex()) + 12) / FIXED_POINT_SCALE;
+    }
+
+    //Sends the journal in batches of at most batchSize records, one batch in flight at a time.
+    //Records are only dropped once their batch is acknowledged, a failed batch stops the drain.
+    //Keys are <timestamp>-<sequence>, so fixes within the same millisecond don't overwrite each
+    //other and a retried batch writes to the same keys again.
+    public void drain(int batchSize, BatchWriter writer) {
+        synchronized (this) {
+            if (draining || count == 0) {
+                return;
+            }
+            draining = true;
+        }
+        drainNext(batchSize, writer);
+    }
+
+    private void drainNext(int batchSize, BatchWriter writer) {
+        Map<String, Object> updates;
+        int batchCount;
+        synchronized (this) {
+            batchCount = Math.min(batchSize, count);
+            if (batchCount == 0) {
+                draining = false;
+                return;
+            }
+            overwrittenInFlight = 0;
+            updates = new HashMap<>(batchCount * 2);
+            for (int i = 0; i < batchCount; i++) {
+                int offset = recordOffset((head + i) % capacity);
+                Map<String, Object> record = new HashMap<>();
+                record.put("lat", buffer.getInt(offset + 8) / FIXED_POINT_SCALE);
+                record.put("lng", buffer.getInt(offset + 12) / FIXED_POINT_SCALE);
+                record.put("accuracy", buffer.getFloat(offset + 16));
+                record.put("speed", buffer.getFloat(offset + 20));
+                updates.put(buffer.getLong(offset) + "-" + (headSequence + i), record);
+            }
+        }
+        writer.write(updates, success -> {
+            if (!success) {
+                synchronized (this) {
+                    draining = false;
+                }
+                return;
+            }
+            synchronized (this) {
+                //records of this batch overwritten while in flight have already left the ring
+                int committed = Math.max(0, Math.min(batchCount - overwrittenInFlight, count));
+                head = (head + committed) % capacity;
+                headSequence += committed;
+                count -= committed;
+                writeHeader();
+            }
+            drainNext(batchSize, writer);
+        });
+    }
+
+    public synchronized void clear() {
+        head = 0;
+        count = 0;
+        writeHeader();
+    }
+
+    private int newestIndex() {
+        if (count == 0) {
+            throw new IllegalStateException("Journal is empty");
+        }
+        return (head + count - 1) % capacity;
+    }
+
+    private int recordOffset(int index) {
+        return HEADER_SIZE + index * RECORD_SIZE;
+    }
+
+    private void writeHeader() {
+        buffer.putInt(OFFSET_HEAD, head);
+        buffer.putInt(OFFSET_COUNT, count);
+        buffer.putLong(OFFSET_HEAD_SEQUENCE, headSequence);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        buffer.force();
+        file.close();
+    }
+}
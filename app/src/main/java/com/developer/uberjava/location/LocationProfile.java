@@ -0,0 +1,23 @@
+package com.developer.uberjava.location;
+
+public enum LocationProfile {
+    //interval, fastest interval, smallest displacement, high accuracy, max wait (batching)
+    PARKED(60000, 30000, 25f, false, 180000),
+    IDLE_ONLINE(15000, 10000, 20f, false, 45000),
+    CRUISING(5000, 3000, 10f, true, 10000);
+
+    public final long intervalMillis;
+    public final long fastestIntervalMillis;
+    public final float smallestDisplacementMeters;
+    public final boolean highAccuracy;
+    public final long maxWaitMillis;
+
+    LocationProfile(long intervalMillis, long fastestIntervalMillis, float smallestDisplacementMeters,
+                    boolean highAccuracy, long maxWaitMillis) {
+        this.intervalMillis = intervalMillis;
+        this.fastestIntervalMillis = fastestIntervalMillis;
+        this.smallestDisplacementMeters = smallestDisplacementMeters;
+        this.highAccuracy = highAccuracy;
+        this.maxWaitMillis = maxWaitMillis;
+    }
+}
@@ -0,0 +1,81 @@
+package com.developer.uberjava.location;
+
+import com.developer.uberjava.utils.GeoMath;
+
+//Picks a LocationProfile from a smoothed speed estimate. Switching to a more active profile
+//happens right away, falling back to a calmer one only after a dwell time.
+public class LocationProfileSelector {
+
+    private static final double SPEED_SMOOTHING = 0.3;
+    private static final double PARKED_SPEED_MPS = 0.8;
+    private static final double CRUISING_SPEED_MPS = 3.0;
+    private static final long PARKED_AFTER_MILLIS = 120000;
+    private static final long DOWNGRADE_DWELL_MILLIS = 30000;
+
+    private LocationProfile profile = LocationProfile.IDLE_ONLINE;
+    private double speedMps;
+    private boolean hasFix;
+    private double lastLatitude, lastLongitude;
+    private long lastFixMillis;
+    private long slowSinceMillis = -1;
+    private long downgradeCandidateSinceMillis = -1;
+
+    //speed is NaN when the fix has no speed, it is then derived from the previous fix
+    public LocationProfile onFix(double latitude, double longitude, double speed, long timeMillis) {
+        if (Double.isNaN(speed)) {
+            speed = 0;
+            if (hasFix && timeMillis > lastFixMillis) {
+                speed = GeoMath.distanceMeters(lastLatitude, lastLongitude, latitude, longitude)
+                        * 1000.0 / (timeMillis - lastFixMillis);
+            }
+        }
+        speedMps = hasFix ? speedMps + SPEED_SMOOTHING * (speed - speedMps) : speed;
+        hasFix = true;
+        lastLatitude = latitude;
+        lastLongitude = longitude;
+        lastFixMillis = timeMillis;
+
+        if (speedMps < PARKED_SPEED_MPS) {
+            if (slowSinceMillis < 0) {
+                slowSinceMillis = timeMillis;
+            }
+        } else {
+            slowSinceMillis = -1;
+        }
+        return update(timeMillis);
+    }
+
+    private LocationProfile update(long timeMillis) {
+        LocationProfile target;
+        if (slowSinceMillis >= 0 && timeMillis - slowSinceMillis >= PARKED_AFTER_MILLIS) {
+            target = LocationProfile.PARKED;
+        } else if (speedMps < CRUISING_SPEED_MPS) {
+            target = LocationProfile.IDLE_ONLINE;
+        } else {
+            target = LocationProfile.CRUISING;
+        }
+
+        if (target.ordinal() > profile.ordinal()) {
+            profile = target;
+            downgradeCandidateSinceMillis = -1;
+        } else if (target.ordinal() < profile.ordinal()) {
+            if (downgradeCandidateSinceMillis < 0) {
+                downgradeCandidateSinceMillis = timeMillis;
+            } else if (timeMillis - downgradeCandidateSinceMillis >= DOWNGRADE_DWELL_MILLIS) {
+                profile = target;
+                downgradeCandidateSinceMillis = -1;
+            }
+        } else {
+            downgradeCandidateSinceMillis = -1;
+        }
+        return profile;
+    }
+
+    public LocationProfile getProfile() {
+        return profile;
+    }
+
+    public double getSpeedMps() {
+        return speedMps;
+    }
+}
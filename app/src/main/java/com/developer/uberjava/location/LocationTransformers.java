@@ -0,0 +1,137 @@
+package com.developer.uberjava.location;
+
+import com.developer.uberjava.Common;
+import com.developer.uberjava.utils.GeoMath;
+
+import org.reactivestreams.Publisher;
+
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Flowable;
+import io.reactivex.FlowableTransformer;
+import io.reactivex.Maybe;
+import io.reactivex.Scheduler;
+import io.reactivex.Single;
+import io.reactivex.functions.Action;
+import io.reactivex.functions.BooleanSupplier;
+import io.reactivex.functions.Consumer;
+import io.reactivex.functions.Function;
+
+//Composable stages of the location publish path. Every stage that keeps state creates it
+//per subscription and every stage that waits takes a Scheduler, so TestScheduler can drive them.
+public class LocationTransformers {
+
+    //Everything between the offline journal and the write: dead-band, throttle, shard lookup,
+    //publish. LocationPublishService and the trace replay simulator both run exactly this.
+    public static FlowableTransformer<LocationFix, LocationFix> publishPath(ShardResolver resolver,
+                                                                          Function<LocationFix, Single<LocationFix>> publisher,
+                                                                          Scheduler timerScheduler, Scheduler ioScheduler,
+                                                                          Consumer<Throwable> onError) {
+        return upstream -> upstream
+                .compose(displacementFilter(Common.PUBLISH_MIN_DISTANCE_METERS, Common.PUBLISH_MIN_BEARING_DEGREES))
+                .compose(throttle(Common.PUBLISH_MIN_INTERVAL_MS, Common.PUBLISH_FLUSH_DISTANCE_METERS, timerScheduler))
+                .compose(resolveShardOn(resolver, ioScheduler, onError))
+                .compose(publishOn(publisher, ioScheduler, onError));
+    }
+
+    //Kalman smoothing, outliers are dropped and reported to onRejected. Runs before the fixes are
+    //shared, so the camera and the publish path both only ever see smoothed positions.
+    public static FlowableTransformer<LocationFix, LocationFix> smooth(Action onRejected) {
+        return upstream -> Flowable.defer(() -> {
+            KalmanLocationFilter filter = new KalmanLocationFilter();
+            return upstream.concatMapMaybe(fix -> {
+                LocationFix smoothed = filter.filter(fix);
+                if (smoothed == null) {
+                    onRejected.run();
+                    return Maybe.empty();
+                }
+                return Maybe.just(smoothed);
+            });
+        });
+    }
+
+    //Drops fixes closer than minDistanceMeters to the last passed one unless the heading turned by minBearingDegrees
+    public static FlowableTransformer<LocationFix, LocationFix> displacementFilter(double minDistanceMeters, double minBearingDegrees) {
+        return upstream -> Flowable.defer(() -> {
+            LocationFix[] last = new LocationFix[1];
+            return upstream.filter(fix -> {
+                LocationFix previous = last[0];
+                if (previous != null && GeoMath.isWithinDeadBand(previous.getLatitude(), previous.getLongitude(), previous.getBearing(),
+                        fix.getLatitude(), fix.getLongitude(), fix.getBearing(), minDistanceMeters, minBearingDegrees)) {
+                    return false;
+                }
+                last[0] = fix;
+                return true;
+            });
+        });
+    }
+
+    //At most one fix per minIntervalMillis, keeping only the newest while waiting. A fix further
+    //than flushDistanceMeters from the last emitted one goes through immediately.
+    public static FlowableTransformer<LocationFix, LocationFix> throttle(long minIntervalMillis, double flushDistanceMeters, Scheduler scheduler) {
+        return upstream -> Flowable.defer(() -> {
+            LocationFix[] last = new LocationFix[1];
+            long[] lastEmittedAt = new long[1];
+            return upstream.switchMap(fix -> {
+                LocationFix previous = last[0];
+                if (previous == null) {
+                    return Flowable.just(fix);
+                }
+                long wait = lastEmittedAt[0] + minIntervalMillis - scheduler.now(TimeUnit.MILLISECONDS);
+                if (wait <= 0 || GeoMath.distanceMeters(previous.getLatitude(), previous.getLongitude(),
+                        fix.getLatitude(), fix.getLongitude()) >= flushDistanceMeters) {
+                    return Flowable.just(fix);
+                }
+                return Flowable.just(fix).delay(wait, TimeUnit.MILLISECONDS, scheduler);
+            }).doOnNext(fix -> {
+                last[0] = fix;
+                lastEmittedAt[0] = scheduler.now(TimeUnit.MILLISECONDS);
+            });
+        });
+    }
+
+    //Diverts fixes into the journal while offline instead of queueing writes
+    public static FlowableTransformer<LocationFix, LocationFix> journalWhileOffline(BooleanSupplier isOnline, LocationJournal journal) {
+        return upstream -> upstream.filter(fix -> {
+            if (isOnline.getAsBoolean() || journal == null) {
+                return true;
+            }
+            journal.append(fix.getTimeMillis(), fix.getLatitude(), fix.getLongitude(), fix.getAccuracy(),
+                    Double.isNaN(fix.getSpeed()) ? 0f : (float) fix.getSpeed());
+            return false;
+        });
+    }
+
+    //Resolves the shard on scheduler; a fix whose lookup fails is reported and skipped
+    public static FlowableTransformer<LocationFix, LocationFix> resolveShardOn(ShardResolver resolver, Scheduler scheduler,
+                                                                             Consumer<Throwable> onError) {
+        return upstream -> upstream.concatMapMaybe(fix -> Maybe.fromCallable(() ->
+                fix.withShardName(resolver.resolve(fix.getLatitude(), fix.getLongitude())))
+                .subscribeOn(scheduler)
+                .doOnError(onError)
+                .onErrorComplete());
+    }
+
+    //Keeps exactly one write in flight and only the newest fix pending behind it. Failed writes
+    //are retried with backoff, then reported and skipped so the stream stays alive.
+    public static FlowableTransformer<LocationFix, LocationFix> publishOn(Function<LocationFix, Single<LocationFix>> publisher,
+                                                                        Scheduler scheduler, Consumer<Throwable> onError) {
+        return upstream -> upstream.onBackpressureLatest()
+                .flatMapMaybe(fix -> Single.defer(() -> publisher.apply(fix))
+                        .subscribeOn(scheduler)
+                        .retryWhen(retryWithBackoff(3, 1000, scheduler))
+                        .toMaybe()
+                        .doOnError(onError)
+                        .onErrorComplete(), false, 1);
+    }
+
+    //Retries up to maxRetries times, waiting initialDelayMillis, then twice as long each time
+    public static Function<Flowable<Throwable>, Publisher<Long>> retryWithBackoff(int maxRetries, long initialDelayMillis, Scheduler scheduler) {
+        return errors -> errors.zipWith(Flowable.range(1, maxRetries + 1), (error, attempt) -> {
+            if (attempt > maxRetries) {
+                throw error instanceof Exception ? (Exception) error : new RuntimeException(error);
+            }
+            return attempt;
+        }).flatMap(attempt -> Flowable.timer(initialDelayMillis << (attempt - 1), TimeUnit.MILLISECONDS, scheduler));
+    }
+}
@@ -0,0 +1,152 @@
+package com.developer.uberjava.location;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+//Per-stage latency histograms and counters for the location publish path. Everything is
+//preallocated in primitive arrays, recording never allocates and is safe from any thread.
+public class PipelineMetrics {
+
+    public static final int STAGE_GEOCODE = 0;
+    public static final int STAGE_DISPATCH = 1;
+    public static final int STAGE_SERVER_ACK = 2;
+    public static final int STAGE_END_TO_END = 3;
+    private static final String[] STAGE_NAMES = {"geocode", "dispatch", "ack", "fix->ack"};
+    private static final int STAGE_COUNT = STAGE_NAMES.length;
+
+    public static final int COUNTER_FIXES = 0;
+    public static final int COUNTER_JOURNALED = 1;
+    public static final int COUNTER_SHARD_LOOKUPS = 2;
+    public static final int COUNTER_WRITES = 3;
+    public static final int COUNTER_WRITE_ERRORS = 4;
+    public static final int COUNTER_OUTLIERS = 5;
+    private static final String[] COUNTER_NAMES = {"fixes", "journaled", "shardLookups", "writes", "writeErrors", "outliers"};
+
+    //Upper bounds in milliseconds, the last bucket catches everything slower
+    private static final long[] BUCKET_BOUNDS_MS = {1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000, 10000, 30000, Long.MAX_VALUE};
+    private static final int BUCKET_COUNT = BUCKET_BOUNDS_MS.length;
+    private static final int WINDOW_SECONDS = 60;
+
+    private static final PipelineMetrics instance = new PipelineMetrics();
+
+    public static PipelineMetrics getInstance() {
+        return instance;
+    }
+
+    private final AtomicLongArray buckets = new AtomicLongArray(STAGE_COUNT * BUCKET_COUNT);
+    private final AtomicLongArray stageTotals = new AtomicLongArray(STAGE_COUNT * 3); //count, sum, max in micros
+    private final AtomicLongArray counters = new AtomicLongArray(COUNTER_NAMES.length);
+    //Writes per second over the last minute, indexed by second % 60 and stamped with the second
+    private final AtomicLongArray writeWindow = new AtomicLongArray(WINDOW_SECONDS);
+    private final AtomicLongArray writeWindowStamps = new AtomicLongArray(WINDOW_SECONDS);
+
+    public void increment(int counter) {
+        counters.incrementAndGet(counter);
+        if (counter == COUNTER_WRITES) {
+            long second = TimeUnit.NANOSECONDS.toSeconds(System.nanoTime());
+            int slot = (int) (second % WINDOW_SECONDS);
+            long stamp = writeWindowStamps.get(slot);
+            if (stamp != second && writeWindowStamps.compareAndSet(slot, stamp, second)) {
+                writeWindow.set(slot, 0);
+            }
+            writeWindow.incrementAndGet(slot);
+        }
+    }
+
+    public void record(int stage, long elapsedNanos) {
+        long micros = TimeUnit.NANOSECONDS.toMicros(elapsedNanos);
+        long millis = micros / 1000;
+        int bucket = 0;
+        while (millis > BUCKET_BOUNDS_MS[bucket]) {
+            bucket++;
+        }
+        buckets.incrementAndGet(stage * BUCKET_COUNT + bucket);
+        stageTotals.incrementAndGet(stage * 3);
+        stageTotals.addAndGet(stage * 3 + 1, micros);
+        int maxIndex = stage * 3 + 2;
+        long max;
+        while (micros > (max = stageTotals.get(maxIndex)) && !stageTotals.compareAndSet(maxIndex, max, micros)) {
+        }
+    }
+
+    public long getCount(int stage) {
+        return stageTotals.get(stage * 3);
+    }
+
+    //Upper bound in milliseconds of the bucket holding the given percentile (0..100)
+    public long getPercentileMillis(int stage, double percentile) {
+        long total = getCount(stage);
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(total * percentile / 100.0);
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += buckets.get(stage * BUCKET_COUNT + i);
+            if (seen >= rank) {
+                return i == BUCKET_COUNT - 1 ? getMaxMillis(stage) : BUCKET_BOUNDS_MS[i];
+            }
+        }
+        return getMaxMillis(stage);
+    }
+
+    public long getMaxMillis(int stage) {
+        return stageTotals.get(stage * 3 + 2) / 1000;
+    }
+
+    public double getMeanMillis(int stage) {
+        long count = getCount(stage);
+        return count == 0 ? 0 : stageTotals.get(stage * 3 + 1) / 1000.0 / count;
+    }
+
+    public long getCounter(int counter) {
+        return counters.get(counter);
+    }
+
+    public long getWritesLastMinute() {
+        long now = TimeUnit.NANOSECONDS.toSeconds(System.nanoTime());
+        long total = 0;
+        for (int i = 0; i < WINDOW_SECONDS; i++) {
+            if (now - writeWindowStamps.get(i) < WINDOW_SECONDS) {
+                total += writeWindow.get(i);
+            }
+        }
+        return total;
+    }
+
+    public void reset() {
+        for (int i = 0; i < buckets.length(); i++) {
+            buckets.set(i, 0);
+        }
+        for (int i = 0; i < stageTotals.length(); i++) {
+            stageTotals.set(i, 0);
+        }
+        for (int i = 0; i < counters.length(); i++) {
+            counters.set(i, 0);
+        }
+        for (int i = 0; i < WINDOW_SECONDS; i++) {
+            writeWindow.set(i, 0);
+            writeWindowStamps.set(i, 0);
+        }
+    }
+
+    public void appendSummary(StringBuilder builder) {
+        for (int stage = 0; stage < STAGE_COUNT; stage++) {
+            builder.append(STAGE_NAMES[stage])
+                    .append(": n=").append(getCount(stage))
+                    .append(" p50=").append(getPercentileMillis(stage, 50)).append("ms")
+                    .append(" p99=").append(getPercentileMillis(stage, 99)).append("ms")
+                    .append(" max=").append(getMaxMillis(stage)).append("ms\n");
+        }
+        for (int counter = 0; counter < COUNTER_NAMES.length; counter++) {
+            builder.append(COUNTER_NAMES[counter]).append('=').append(getCounter(counter)).append(' ');
+        }
+        builder.append("\nwrites/min=").append(getWritesLastMinute());
+    }
+
+    public String getSummary() {
+        StringBuilder builder = new StringBuilder();
+        appendSummary(builder);
+        return builder.toString();
+    }
+}
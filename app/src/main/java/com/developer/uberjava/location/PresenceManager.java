@@ -0,0 +1,112 @@
+package com.developer.uberjava.location;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.ValueEventListener;
+
+import io.reactivex.Observable;
+import io.reactivex.subjects.BehaviorSubject;
+
+//Process-wide watcher of .info/connected. The listener is attached once for the first
+//subscriber and removed after the last one; onDisconnect is armed once per connection.
+//connectionState() emits nothing until the server has reported, unknown is not offline.
+public class PresenceManager {
+
+    private static final String TAG = "PresenceManager";
+    private static PresenceManager instance;
+
+    public static synchronized PresenceManager getInstance() {
+        if (instance == null) {
+            instance = new PresenceManager();
+        }
+        return instance;
+    }
+
+    private final DatabaseReference connectedRef = FirebaseDatabase.getInstance().getReference(".info/connected");
+    private final BehaviorSubject<Boolean> connectionState = BehaviorSubject.create();
+    private int subscriberCount;
+    private boolean known;
+    private boolean connected;
+    private DatabaseReference disconnectTarget;
+    private boolean armed;
+
+    private final ValueEventListener connectedListener = new ValueEventListener() {
+        @Override
+        public void onDataChange(@NonNull DataSnapshot snapshot) {
+            onConnectionChanged(Boolean.TRUE.equals(snapshot.getValue(Boolean.class)));
+        }
+
+        @Override
+        public void onCancelled(@NonNull DatabaseError error) {
+            Log.e(TAG, error.getMessage());
+        }
+    };
+
+    private PresenceManager() {
+    }
+
+    public synchronized void acquire() {
+        if (subscriberCount++ == 0) {
+            connectedRef.addValueEventListener(connectedListener);
+        }
+    }
+
+    public synchronized void release() {
+        if (subscriberCount == 0) {
+            return;
+        }
+        if (--subscriberCount == 0) {
+            connectedRef.removeEventListener(connectedListener);
+            onConnectionChanged(false);
+            known = false;
+        }
+    }
+
+    //The ref that is removed server-side when this client drops off
+    public synchronized void setDisconnectTarget(DatabaseReference target) {
+        if (target == null ? disconnectTarget == null : target.equals(disconnectTarget)) {
+            return;
+        }
+        disconnectTarget = target;
+        armed = false;
+        armDisconnect();
+    }
+
+    public Observable<Boolean> connectionState() {
+        //The subject still holds the last state of a previous session until the server reports again
+        return connectionState.filter(state -> isKnown()).distinctUntilChanged();
+    }
+
+    private synchronized boolean isKnown() {
+        return known;
+    }
+
+    public synchronized boolean isConnected() {
+        return connected;
+    }
+
+    private synchronized void onConnectionChanged(boolean isConnected) {
+        if (known && connected == isConnected) {
+            return;
+        }
+        known = true;
+        connected = isConnected;
+        //The server runs and forgets onDisconnect operations once we drop, re-arm on every reconnect
+        armed = false;
+        armDisconnect();
+        connectionState.onNext(isConnected);
+    }
+
+    private void armDisconnect() {
+        if (connected && !armed && disconnectTarget != null) {
+            disconnectTarget.onDisconnect().removeValue();
+            armed = true;
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.developer.uberjava.location;
+
+import android.location.Location;
+
+import com.google.android.gms.location.LocationCallback;
+import com.google.android.gms.location.LocationResult;
+
+import io.reactivex.BackpressureStrategy;
+import io.reactivex.Flowable;
+
+public class RxLocation {
+
+    //Emits every location of every batch; a slow consumer only ever sees the newest one
+    public static Flowable<Location> locationUpdates(AdaptiveLocationScheduler scheduler) {
+        return Flowable.create(emitter -> {
+            LocationCallback callback = new LocationCallback() {
+                @Override
+                public void onLocationResult(LocationResult locationResult) {
+                    for (Location location : locationResult.getLocations()) {
+                        emitter.onNext(location);
+                    }
+                }
+            };
+            emitter.setCancellable(scheduler::stop);
+            scheduler.start(callback);
+        }, BackpressureStrategy.LATEST);
+    }
+
+    public static LocationFix toFix(Location location) {
+        return new LocationFix(location.getLatitude(), location.getLongitude(), location.getAccuracy(),
+                location.hasSpeed() ? location.getSpeed() : Double.NaN,
+                location.hasBearing() ? location.getBearing() : Double.NaN,
+                location.getTime());
+    }
+}
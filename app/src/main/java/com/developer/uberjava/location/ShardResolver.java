@@ -0,0 +1,6 @@
+package com.developer.uberjava.location;
+
+//Maps a position to the DriversLocation child it is published under. May block.
+public interface ShardResolver {
+    String resolve(double latitude, double longitude) throws Exception;
+}
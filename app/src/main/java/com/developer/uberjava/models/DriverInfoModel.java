@@ -1,5 +1,10 @@
 package com.developer.uberjava.models;
 
+import com.developer.uberjava.codegen.FirebaseCodec;
+
+import java.util.Objects;
+
+@FirebaseCodec
 public class DriverInfoModel {
     private String firstName,lastName,phoneNumber,avatar;
     private double rating;
@@ -43,4 +48,21 @@ public class DriverInfoModel {
     public void setRating(double rating) {
         this.rating = rating;
     }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof DriverInfoModel)) return false;
+        DriverInfoModel that = (DriverInfoModel) o;
+        return Double.compare(rating, that.rating) == 0
+                && Objects.equals(firstName, that.firstName)
+                && Objects.equals(lastName, that.lastName)
+                && Objects.equals(phoneNumber, that.phoneNumber)
+                && Objects.equals(avatar, that.avatar);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(firstName, lastName, phoneNumber, avatar, rating);
+    }
 }
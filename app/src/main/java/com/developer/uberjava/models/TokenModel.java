@@ -1,5 +1,8 @@
 package com.developer.uberjava.models;
 
+import com.developer.uberjava.codegen.FirebaseCodec;
+
+@FirebaseCodec
 public class TokenModel {
     private String token;
 
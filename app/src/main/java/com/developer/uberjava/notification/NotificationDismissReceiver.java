@@ -0,0 +1,27 @@
+package com.developer.uberjava.notification;
+
+import android.app.PendingIntent;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+
+//Delete intent target of every notification NotificationDispatcher posts
+public class NotificationDismissReceiver extends BroadcastReceiver {
+
+    private static final String EXTRA_NOTIFICATION_ID = "notification_id";
+
+    //One PendingIntent per id, the request code keeps them from replacing each other
+    static PendingIntent intentFor(Context context, int notificationId) {
+        Intent intent = new Intent(context, NotificationDismissReceiver.class)
+                .putExtra(EXTRA_NOTIFICATION_ID, notificationId);
+        return PendingIntent.getBroadcast(context, notificationId, intent, PendingIntent.FLAG_UPDATE_CURRENT);
+    }
+
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        int notificationId = intent.getIntExtra(EXTRA_NOTIFICATION_ID, -1);
+        if (notificationId >= 0) {
+            NotificationDispatcher.getInstance(context).onDismissed(notificationId);
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package com.developer.uberjava.notification;
+
+import android.app.Notification;
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.drawable.Drawable;
+import android.os.Build;
+import android.os.SystemClock;
+
+import androidx.core.app.NotificationCompat;
+import androidx.core.app.NotificationManagerCompat;
+import androidx.core.content.ContextCompat;
+
+import com.developer.uberjava.Common;
+import com.developer.uberjava.R;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+//Posts push notifications. The channel, large icon and content intent are built once; a
+//collapse key always maps to the same id so repeats update in place, and bursts are grouped
+//under one summary that alerts once per NOTIFICATION_BURST_WINDOW_MS. A lone notification
+//alerts by itself, the summary only takes over once there is a second one. Swiped-away
+//notifications report back through NotificationDismissReceiver so the count stays true.
+public class NotificationDispatcher {
+
+    private static final String NOTIFICATION_CHANNEL_ID = "uber_remake_channel";
+    private static final String GROUP_KEY = "com.developer.uberjava.PUSH";
+    private static final int SUMMARY_ID = 1;
+    private static final int FIRST_ID = 100;
+    private static final int SUMMARY_LINES = 5;
+
+    private static NotificationDispatcher instance;
+
+    public static synchronized NotificationDispatcher getInstance(Context context) {
+        if (instance == null) {
+            instance = new NotificationDispatcher(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private final Context context;
+    private final NotificationManagerCompat notificationManager;
+    private final Bitmap largeIcon;
+    private final PendingIntent contentIntent;
+    private final Map<String, Integer> collapseKeyIds = new HashMap<>();
+    //Summary lines by notification id, oldest first, so an update replaces its own line
+    private final LinkedHashMap<Integer, String> recentLines = new LinkedHashMap<>();
+    //Ids currently in the shade, the summary count and grouping are derived from it
+    private final Set<Integer> activeIds = new HashSet<>();
+    private int nextId = FIRST_ID;
+    private long lastAlertAt = -Common.NOTIFICATION_BURST_WINDOW_MS;
+
+    private NotificationDispatcher(Context context) {
+        this.context = context;
+        notificationManager = NotificationManagerCompat.from(context);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            NotificationChannel notificationChannel = new NotificationChannel(NOTIFICATION_CHANNEL_ID, "uber_remake", NotificationManager.IMPORTANCE_HIGH);
+            notificationChannel.setDescription("Uber remake");
+            notificationChannel.enableLights(true);
+            notificationChannel.setLightColor(Color.RED);
+            notificationChannel.setVibrationPattern(new long[]{0, 100, 500, 1000});
+            context.getSystemService(NotificationManager.class).createNotificationChannel(notificationChannel);
+        }
+        largeIcon = renderIcon(context, R.drawable.ic_baseline_directions_car_24);
+        //Brings the running task forward, or starts at the splash when there is none
+        Intent intent = context.getPackageManager().getLaunchIntentForPackage(context.getPackageName());
+        contentIntent = PendingIntent.getActivity(context, 0, intent, PendingIntent.FLAG_UPDATE_CURRENT);
+    }
+
+    //collapseKey may be null, every such push then gets its own notification
+    public synchronized void show(String collapseKey, String title, String body) {
+        int id;
+        if (collapseKey == null) {
+            id = nextId++;
+        } else {
+            Integer existing = collapseKeyIds.get(collapseKey);
+            if (existing == null) {
+                existing = nextId++;
+                collapseKeyIds.put(collapseKey, existing);
+            }
+            id = existing;
+        }
+        activeIds.add(id);
+
+        long now = SystemClock.elapsedRealtime();
+        boolean alert = now - lastAlertAt >= Common.NOTIFICATION_BURST_WINDOW_MS;
+        if (alert) {
+            lastAlertAt = now;
+        }
+
+        recentLines.remove(id);
+        recentLines.put(id, summaryLine(title, body));
+        if (recentLines.size() > SUMMARY_LINES) {
+            Iterator<Integer> eldest = recentLines.keySet().iterator();
+            eldest.next();
+            eldest.remove();
+        }
+
+        //Grouped children are silent under GROUP_ALERT_SUMMARY, which is only right once a summary exists
+        boolean grouped = activeIds.size() > 1;
+
+        Notification notification = new NotificationCompat.Builder(context, NOTIFICATION_CHANNEL_ID)
+                .setContentTitle(title)
+                .setContentText(body)
+                .setAutoCancel(true)
+                .setPriority(NotificationCompat.PRIORITY_HIGH)
+                .setDefaults(Notification.DEFAULT_VIBRATE)
+                .setSmallIcon(R.drawable.ic_baseline_directions_car_24)
+                .setLargeIcon(largeIcon)
+                .setContentIntent(contentIntent)
+                .setDeleteIntent(NotificationDismissReceiver.intentFor(context, id))
+                .setGroup(GROUP_KEY)
+                .setGroupAlertBehavior(grouped ? NotificationCompat.GROUP_ALERT_SUMMARY : NotificationCompat.GROUP_ALERT_ALL)
+                .setOnlyAlertOnce(!alert)
+                .build();
+        if (grouped) {
+            postSummary(alert);
+        }
+        notificationManager.notify(id, notification);
+    }
+
+    //Called once the driver has opened the app, ids restart and the next push alerts again
+    public synchronized void clear() {
+        notificationManager.cancelAll();
+        collapseKeyIds.clear();
+        recentLines.clear();
+        activeIds.clear();
+        nextId = FIRST_ID;
+        lastAlertAt = -Common.NOTIFICATION_BURST_WINDOW_MS;
+    }
+
+    //The driver swiped a notification away, or the summary and with it the whole group
+    synchronized void onDismissed(int id) {
+        if (id == SUMMARY_ID) {
+            collapseKeyIds.clear();
+            recentLines.clear();
+            activeIds.clear();
+            return;
+        }
+        if (!activeIds.remove(id)) {
+            return;
+        }
+        recentLines.remove(id);
+        collapseKeyIds.values().remove(id);
+        //Quietly correct the count on the summary that is still showing
+        if (activeIds.size() > 1) {
+            postSummary(false);
+        }
+    }
+
+    private void postSummary(boolean alert) {
+        NotificationCompat.InboxStyle style = new NotificationCompat.InboxStyle()
+                .setSummaryText(context.getString(R.string.new_notifications, activeIds.size()));
+        String[] lines = recentLines.values().toArray(new String[0]);
+        for (int i = lines.length - 1; i >= 0; i--) {
+            style.addLine(lines[i]);
+        }
+        Notification summary = new NotificationCompat.Builder(context, NOTIFICATION_CHANNEL_ID)
+                .setContentTitle(context.getString(R.string.new_notifications, activeIds.size()))
+                .setSmallIcon(R.drawable.ic_baseline_directions_car_24)
+                .setLargeIcon(largeIcon)
+                .setStyle(style)
+                .setContentIntent(contentIntent)
+                .setAutoCancel(true)
+                .setPriority(NotificationCompat.PRIORITY_HIGH)
+                .setGroup(GROUP_KEY)
+                .setDeleteIntent(NotificationDismissReceiver.intentFor(context, SUMMARY_ID))
+                .setGroupSummary(true)
+                .setOnlyAlertOnce(!alert)
+                .build();
+        notificationManager.notify(SUMMARY_ID, summary);
+    }
+
+    private static String summaryLine(String title, String body) {
+        if (title == null) {
+            return body == null ? "" : body;
+        }
+        return body == null ? title : title + " " + body;
+    }
+
+    //The car icon is a vector, BitmapFactory can't decode it
+    private static Bitmap renderIcon(Context context, int drawableRes) {
+        Drawable drawable = ContextCompat.getDrawable(context, drawableRes);
+        if (drawable == null) {
+            return null;
+        }
+        int size = context.getResources().getDimensionPixelSize(android.R.dimen.notification_large_icon_width);
+        Bitmap bitmap = Bitmap.createBitmap(size, size, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(bitmap);
+        drawable.setBounds(0, 0, size, size);
+        drawable.draw(canvas);
+        return bitmap;
+    }
+}
@@ -0,0 +1,146 @@
+package com.developer.uberjava.profile;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.developer.uberjava.Common;
+import com.developer.uberjava.models.DriverInfoModel;
+import com.developer.uberjava.models.DriverInfoModelCodec;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.ValueEventListener;
+
+import io.reactivex.Maybe;
+import io.reactivex.Observable;
+
+//Keeps the signed-in driver's DriverInfo on disk so launches after the first never wait on
+//the network. Entries belong to one uid and expire after PROFILE_CACHE_TTL_MS; within the TTL
+//the cached copy is served first and DriverInfo/<uid> revalidates it in the background.
+public class DriverProfileStore {
+
+    private static final String TAG = "DriverProfileStore";
+    private static final String PREFS_NAME = "driver_profile";
+    private static final String KEY_UID = "uid";
+    private static final String KEY_SAVED_AT = "savedAt";
+
+    private static DriverProfileStore instance;
+
+    public static synchronized DriverProfileStore getInstance(Context context) {
+        if (instance == null) {
+            instance = new DriverProfileStore(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private final SharedPreferences preferences;
+    private final DatabaseReference driverInfoRef;
+
+    private DriverProfileStore(Context context) {
+        preferences = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        driverInfoRef = FirebaseDatabase.getInstance().getReference(Common.DRIVER_INFO_REFERENCE);
+    }
+
+    //The cached profile if it belongs to uid and hasn't expired, otherwise empty
+    public Maybe<DriverInfoModel> getCached(String uid) {
+        return Maybe.fromCallable(() -> read(uid));
+    }
+
+    //One network read, persisted on success. Completes empty when the driver isn't registered.
+    public Maybe<DriverInfoModel> fetch(String uid) {
+        return Maybe.create(emitter -> {
+            DatabaseReference userRef = driverInfoRef.child(uid);
+            ValueEventListener valueEventListener = new ValueEventListener() {
+                @Override
+                public void onDataChange(@NonNull DataSnapshot snapshot) {
+                    DriverInfoModel model = DriverInfoModelCodec.decode(snapshot.getValue());
+                    if (model != null) {
+                        put(uid, model);
+                        emitter.onSuccess(model);
+                    } else {
+                        emitter.onComplete();
+                    }
+                }
+
+                @Override
+                public void onCancelled(@NonNull DatabaseError error) {
+                    emitter.tryOnError(error.toException());
+                }
+            };
+            userRef.addListenerForSingleValueEvent(valueEventListener);
+            emitter.setCancellable(() -> userRef.removeEventListener(valueEventListener));
+        });
+    }
+
+    //Cached profile first, then every server change for as long as the caller is subscribed
+    public Observable<DriverInfoModel> observe(String uid) {
+        return Observable.<DriverInfoModel>create(emitter -> {
+            DriverInfoModel cached = read(uid);
+            if (cached != null) {
+                emitter.onNext(cached);
+            }
+            DatabaseReference userRef = driverInfoRef.child(uid);
+            ValueEventListener valueEventListener = new ValueEventListener() {
+                @Override
+                public void onDataChange(@NonNull DataSnapshot snapshot) {
+                    DriverInfoModel model = DriverInfoModelCodec.decode(snapshot.getValue());
+                    if (model != null) {
+                        put(uid, model);
+                        emitter.onNext(model);
+                    } else {
+                        //Gone server-side, the next launch has to go through registration again
+                        clear();
+                    }
+                }
+
+                @Override
+                public void onCancelled(@NonNull DatabaseError error) {
+                    //Keep showing what we have, it's only a revalidation
+                    Log.e(TAG, error.getMessage());
+                }
+            };
+            userRef.addValueEventListener(valueEventListener);
+            emitter.setCancellable(() -> userRef.removeEventListener(valueEventListener));
+        }).distinctUntilChanged();
+    }
+
+    public synchronized void put(String uid, DriverInfoModel model) {
+        Common.currentUser = model;
+        preferences.edit()
+                .putString(KEY_UID, uid)
+                .putLong(KEY_SAVED_AT, System.currentTimeMillis())
+                .putString(DriverInfoModelCodec.FIRST_NAME, model.getFirstName())
+                .putString(DriverInfoModelCodec.LAST_NAME, model.getLastName())
+                .putString(DriverInfoModelCodec.PHONE_NUMBER, model.getPhoneNumber())
+                .putString(DriverInfoModelCodec.AVATAR, model.getAvatar())
+                .putLong(DriverInfoModelCodec.RATING, Double.doubleToRawLongBits(model.getRating()))
+                .apply();
+    }
+
+    public synchronized void clear() {
+        preferences.edit().clear().apply();
+    }
+
+    private synchronized DriverInfoModel read(String uid) {
+        String cachedUid = preferences.getString(KEY_UID, null);
+        if (cachedUid == null) {
+            return null;
+        }
+        long age = System.currentTimeMillis() - preferences.getLong(KEY_SAVED_AT, 0);
+        if (!cachedUid.equals(uid) || age < 0 || age > Common.PROFILE_CACHE_TTL_MS) {
+            clear();
+            return null;
+        }
+        DriverInfoModel model = new DriverInfoModel();
+        model.setFirstName(preferences.getString(DriverInfoModelCodec.FIRST_NAME, null));
+        model.setLastName(preferences.getString(DriverInfoModelCodec.LAST_NAME, null));
+        model.setPhoneNumber(preferences.getString(DriverInfoModelCodec.PHONE_NUMBER, null));
+        model.setAvatar(preferences.getString(DriverInfoModelCodec.AVATAR, null));
+        model.setRating(Double.longBitsToDouble(preferences.getLong(DriverInfoModelCodec.RATING, 0)));
+        return model;
+    }
+}
@@ -0,0 +1,171 @@
+package com.developer.uberjava.profile;
+
+import android.annotation.SuppressLint;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import com.developer.uberjava.Common;
+import com.developer.uberjava.models.DriverInfoModel;
+import com.developer.uberjava.models.DriverInfoModelCodec;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.FirebaseDatabase;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Completable;
+import io.reactivex.subjects.CompletableSubject;
+
+//Token and profile writes go through here. Each path remembers a hash of the last value the
+//server acked, so unchanged writes never leave the device. Whatever is pending after a short
+//debounce goes out as one multi-path updateChildren, failed batches retry with backoff. The
+//hashes belong to one uid and are forgotten on sign-out or when another uid writes.
+public class ProfileSync {
+
+    private static final String TAG = "ProfileSync";
+    private static final String PREFS_NAME = "profile_sync";
+    //Can't clash with a path, those always contain a '/'
+    private static final String KEY_UID = "uid";
+
+    private static ProfileSync instance;
+
+    public static synchronized ProfileSync getInstance(Context context) {
+        if (instance == null) {
+            instance = new ProfileSync(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private final SharedPreferences ackedHashes;
+    private final DatabaseReference rootRef;
+    private Map<String, Object> pending = new HashMap<>();
+    private CompletableSubject pendingDone = CompletableSubject.create();
+    private Map<String, Object> inFlight;
+    private boolean flushScheduled;
+    private int attempt;
+
+    private ProfileSync(Context context) {
+        ackedHashes = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        rootRef = FirebaseDatabase.getInstance().getReference();
+    }
+
+    public Completable updateToken(String uid, String token) {
+        return write(uid, Collections.<String, Object>singletonMap(Common.TOKEN_REFERENCE + "/" + uid, token));
+    }
+
+    //Only the properties that differ between before and after are written under DriverInfo/<uid>
+    public Completable updateProfile(String uid, DriverInfoModel before, DriverInfoModel after) {
+        String prefix = Common.DRIVER_INFO_REFERENCE + "/" + uid + "/";
+        Map<String, Object> updates = new HashMap<>();
+        for (Map.Entry<String, Object> entry : DriverInfoModelCodec.diff(before, after).entrySet()) {
+            updates.put(prefix + entry.getKey(), entry.getValue());
+        }
+        return write(uid, updates);
+    }
+
+    //Completes once every value is on the server, right away when nothing changed. Nothing is
+    //queued until subscribed.
+    public Completable write(String uid, Map<String, Object> updates) {
+        return Completable.defer(() -> enqueue(uid, updates));
+    }
+
+    //Sign-out, the next driver on this device must not inherit the acked state
+    public synchronized void clear() {
+        ackedHashes.edit().clear().apply();
+    }
+
+    private synchronized Completable enqueue(String uid, Map<String, Object> updates) {
+        if (!uid.equals(ackedHashes.getString(KEY_UID, null))) {
+            ackedHashes.edit().clear().putString(KEY_UID, uid).apply();
+        }
+        boolean changed = false;
+        for (Map.Entry<String, Object> entry : updates.entrySet()) {
+            String path = entry.getKey();
+            boolean queued = pending.containsKey(path) || (inFlight != null && inFlight.containsKey(path));
+            if (!queued && ackedHashes.contains(path) && ackedHashes.getLong(path, 0) == hash(entry.getValue())) {
+                continue;
+            }
+            pending.put(path, entry.getValue());
+            changed = true;
+        }
+        if (!changed) {
+            return Completable.complete();
+        }
+        scheduleFlush(Common.SYNC_DEBOUNCE_MS);
+        return pendingDone.hide();
+    }
+
+    @SuppressLint("CheckResult")
+    private void scheduleFlush(long delayMillis) {
+        if (flushScheduled) {
+            return;
+        }
+        flushScheduled = true;
+        Completable.timer(delayMillis, TimeUnit.MILLISECONDS).subscribe(this::flush);
+    }
+
+    private synchronized void flush() {
+        flushScheduled = false;
+        //Only one batch in flight, whatever piles up meanwhile goes out in the next one
+        if (inFlight != null || pending.isEmpty()) {
+            return;
+        }
+        Map<String, Object> batch = pending;
+        CompletableSubject done = pendingDone;
+        pending = new HashMap<>();
+        pendingDone = CompletableSubject.create();
+        inFlight = batch;
+        rootRef.updateChildren(batch).addOnCompleteListener(task ->
+                onBatchComplete(batch, done, task.isSuccessful() ? null : task.getException()));
+    }
+
+    private synchronized void onBatchComplete(Map<String, Object> batch, CompletableSubject done, Exception error) {
+        inFlight = null;
+        if (error == null) {
+            attempt = 0;
+            SharedPreferences.Editor editor = ackedHashes.edit();
+            for (Map.Entry<String, Object> entry : batch.entrySet()) {
+                editor.putLong(entry.getKey(), hash(entry.getValue()));
+            }
+            editor.apply();
+            done.onComplete();
+            if (!pending.isEmpty()) {
+                scheduleFlush(0);
+            }
+            return;
+        }
+
+        Log.e(TAG, "" + error.getMessage());
+        if (++attempt > Common.SYNC_MAX_RETRIES) {
+            //Nothing was acked, so the next write of these values won't be skipped
+            attempt = 0;
+            done.onError(error);
+            if (!pending.isEmpty()) {
+                scheduleFlush(Common.SYNC_DEBOUNCE_MS);
+            }
+            return;
+        }
+        //Newer values queued meanwhile win over the failed ones
+        for (Map.Entry<String, Object> entry : batch.entrySet()) {
+            if (!pending.containsKey(entry.getKey())) {
+                pending.put(entry.getKey(), entry.getValue());
+            }
+        }
+        pendingDone.subscribe(done);
+        scheduleFlush(Math.min(Common.SYNC_RETRY_INITIAL_MS << (attempt - 1), Common.SYNC_RETRY_MAX_MS));
+    }
+
+    //64-bit FNV-1a over the type and value, collisions would only ever skip a write
+    private static long hash(Object value) {
+        String text = value == null ? "null" : value.getClass().getName() + ':' + value;
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < text.length(); i++) {
+            hash ^= text.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+}
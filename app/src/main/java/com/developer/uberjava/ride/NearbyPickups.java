@@ -0,0 +1,142 @@
+package com.developer.uberjava.ride;
+
+import android.util.Log;
+
+import com.developer.uberjava.Common;
+import com.firebase.geofire.GeoFire;
+import com.firebase.geofire.GeoLocation;
+import com.firebase.geofire.GeoQuery;
+import com.firebase.geofire.GeoQueryEventListener;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.FirebaseDatabase;
+
+import io.reactivex.Observable;
+import io.reactivex.subjects.PublishSubject;
+
+//Pending pickups around the driver, mirrored from a GeoFire query into a PickupSpatialIndex
+//one key at a time. GeoFire calls back on the main thread and fixes arrive there too, so the
+//index is only ever touched from main and needs no locking. The query is only open while a
+//screen watches it, fixes in between just remember where the driver is.
+public class NearbyPickups implements GeoQueryEventListener {
+
+    private static final String TAG = "NearbyPickups";
+
+    private final GeoFire geoFire;
+    private final PickupSpatialIndex index = new PickupSpatialIndex(Common.PICKUP_INDEX_CELL_METERS, 256);
+    private GeoQuery geoQuery;
+    private final PublishSubject<Integer> changes = PublishSubject.create();
+    private int[] slots = new int[0];
+    private int watchers;
+    private boolean ready;
+    private double driverLatitude = Double.NaN;
+    private double driverLongitude = Double.NaN;
+
+    public NearbyPickups() {
+        geoFire = new GeoFire(FirebaseDatabase.getInstance().getReference(Common.PICKUP_REQUESTS_REFERENCE));
+    }
+
+    //First watched fix opens the query, later ones only move it, GeoFire diffs the keys itself
+    public void updateDriverLocation(double latitude, double longitude) {
+        driverLatitude = latitude;
+        driverLongitude = longitude;
+        if (watchers == 0) {
+            return;
+        }
+        GeoLocation center = new GeoLocation(latitude, longitude);
+        if (geoQuery == null) {
+            geoQuery = geoFire.queryAtLocation(center, Common.PICKUP_QUERY_RADIUS_KM);
+            geoQuery.addGeoQueryEventListener(this);
+        } else {
+            geoQuery.setCenter(center);
+        }
+    }
+
+    public void watch() {
+        if (watchers++ == 0 && !Double.isNaN(driverLatitude)) {
+            updateDriverLocation(driverLatitude, driverLongitude);
+        }
+    }
+
+    public void unwatch() {
+        if (watchers > 0 && --watchers == 0) {
+            stop();
+        }
+    }
+
+    //Pickup count once the first load is done, then again whenever it changes
+    public Observable<Integer> changes() {
+        return changes.distinctUntilChanged();
+    }
+
+    public void stop() {
+        if (geoQuery != null) {
+            geoQuery.removeAllListeners();
+            geoQuery = null;
+        }
+        ready = false;
+        index.clear();
+    }
+
+    public int size() {
+        return index.size();
+    }
+
+    //Keys of the k nearest pickups, nearest first; outDistances gets the meters
+    public int nearest(double latitude, double longitude, int k, String[] outKeys, double[] outDistances) {
+        if (slots.length < k) {
+            slots = new int[k];
+        }
+        int found = index.nearest(latitude, longitude, k, slots, outDistances);
+        for (int i = 0; i < found; i++) {
+            outKeys[i] = index.getKey(slots[i]);
+        }
+        return found;
+    }
+
+    public int nearestToDriver(int k, String[] outKeys, double[] outDistances) {
+        if (Double.isNaN(driverLatitude)) {
+            return 0;
+        }
+        return nearest(driverLatitude, driverLongitude, k, outKeys, outDistances);
+    }
+
+    public PickupSpatialIndex getIndex() {
+        return index;
+    }
+
+    @Override
+    public void onKeyEntered(String key, GeoLocation location) {
+        index.put(key, location.latitude, location.longitude);
+        publishChange();
+    }
+
+    @Override
+    public void onKeyExited(String key) {
+        index.remove(key);
+        publishChange();
+    }
+
+    @Override
+    public void onKeyMoved(String key, GeoLocation location) {
+        index.put(key, location.latitude, location.longitude);
+    }
+
+    @Override
+    public void onGeoQueryReady() {
+        Log.d(TAG, index.size() + " pickups nearby");
+        ready = true;
+        publishChange();
+    }
+
+    @Override
+    public void onGeoQueryError(DatabaseError error) {
+        Log.e(TAG, "" + error.getMessage());
+    }
+
+    //The initial burst of onKeyEntered is folded into onGeoQueryReady
+    private void publishChange() {
+        if (ready) {
+            changes.onNext(index.size());
+        }
+    }
+}
@@ -0,0 +1,373 @@
+package com.developer.uberjava.ride;
+
+import java.util.Arrays;
+
+//Uniform lat/lng grid over primitive arrays. Each cell is a doubly linked list threaded through
+//int[] next/prev, cells live in an open-addressing long->int table and keys in an open-addressing
+//String->slot table. Updates and queries never box, queries fill caller-owned arrays. Distances
+//are equirectangular around the query point, which is well within a meter of haversine at pickup
+//distances. Not thread-safe, use from one thread.
+public class PickupSpatialIndex {
+
+    private static final double METERS_PER_DEGREE = 111320.0;
+    private static final int NONE = -1;
+
+    private final double cellDegrees;
+
+    //Slots
+    private double[] latitudes;
+    private double[] longitudes;
+    private String[] keys;
+    private long[] slotCells;
+    private int[] next;
+    private int[] prev;
+    private int freeHead = NONE;
+    private int slotCount;
+    private int size;
+
+    //Key table, linear probing over slot numbers, NONE marks an empty bucket
+    private int[] keySlots;
+
+    //Cell table, cells are never removed, an empty one just has head NONE
+    private long[] cellKeys;
+    private int[] cellHeads;
+    private boolean[] cellUsed;
+    private int cellCount;
+
+    public PickupSpatialIndex(double cellSizeMeters, int initialCapacity) {
+        this.cellDegrees = cellSizeMeters / METERS_PER_DEGREE;
+        int capacity = Math.max(16, initialCapacity);
+        latitudes = new double[capacity];
+        longitudes = new double[capacity];
+        keys = new String[capacity];
+        slotCells = new long[capacity];
+        next = new int[capacity];
+        prev = new int[capacity];
+        int tableSize = Integer.highestOneBit(capacity) * 2;
+        cellKeys = new long[tableSize];
+        cellHeads = new int[tableSize];
+        cellUsed = new boolean[tableSize];
+        keySlots = new int[tableSize];
+        Arrays.fill(keySlots, NONE);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    //Insert, or move when the key is already indexed
+    public void put(String key, double latitude, double longitude) {
+        long cell = cellOf(latitude, longitude);
+        int bucket = keyBucket(key);
+        if (keySlots[bucket] != NONE) {
+            int slot = keySlots[bucket];
+            latitudes[slot] = latitude;
+            longitudes[slot] = longitude;
+            if (slotCells[slot] != cell) {
+                unlink(slot);
+                link(slot, cell);
+            }
+            return;
+        }
+        int slot = allocateSlot();
+        latitudes[slot] = latitude;
+        longitudes[slot] = longitude;
+        keys[slot] = key;
+        link(slot, cell);
+        size++;
+        if (size * 2 > keySlots.length) {
+            growKeys();
+        } else {
+            keySlots[bucket] = slot;
+        }
+    }
+
+    public boolean remove(String key) {
+        int bucket = keyBucket(key);
+        int slot = keySlots[bucket];
+        if (slot == NONE) {
+            return false;
+        }
+        deleteKey(bucket);
+        unlink(slot);
+        keys[slot] = null;
+        next[slot] = freeHead;
+        freeHead = slot;
+        size--;
+        return true;
+    }
+
+    public void clear() {
+        Arrays.fill(keys, 0, slotCount, null);
+        Arrays.fill(cellUsed, false);
+        Arrays.fill(keySlots, NONE);
+        freeHead = NONE;
+        slotCount = 0;
+        size = 0;
+        cellCount = 0;
+    }
+
+    public String getKey(int slot) {
+        return keys[slot];
+    }
+
+    public double getLatitude(int slot) {
+        return latitudes[slot];
+    }
+
+    public double getLongitude(int slot) {
+        return longitudes[slot];
+    }
+
+    //Up to k nearest slots written nearest first into outSlots/outDistances, returns how many
+    public int nearest(double latitude, double longitude, int k, int[] outSlots, double[] outDistances) {
+        if (k <= 0 || size == 0) {
+            return 0;
+        }
+        double cosLat = Math.cos(Math.toRadians(latitude));
+        long cy = (long) Math.floor(latitude / cellDegrees);
+        long cx = (long) Math.floor(longitude / cellDegrees);
+        int found = 0;
+        int visited = 0;
+        for (long ring = 0; ; ring++) {
+            for (long dy = -ring; dy <= ring; dy++) {
+                //Interior rows only need the two edge cells of the ring
+                long step = (dy == -ring || dy == ring) ? 1 : Math.max(1, 2 * ring);
+                for (long dx = -ring; dx <= ring; dx += step) {
+                    int slot = headOf(pack(cy + dy, cx + dx));
+                    for (; slot != NONE; slot = next[slot]) {
+                        visited++;
+                        double distance = distance(latitude, longitude, cosLat, slot);
+                        if (found < k) {
+                            found = insertSorted(outSlots, outDistances, found, slot, distance);
+                        } else if (distance < outDistances[k - 1]) {
+                            insertSorted(outSlots, outDistances, k - 1, slot, distance);
+                        }
+                    }
+                }
+            }
+            //Anything outside this block is at least ring cells away along one axis
+            double unseenBound = ring * cellDegrees * METERS_PER_DEGREE * Math.min(1.0, cosLat);
+            if (visited == size || (found == k && outDistances[k - 1] <= unseenBound)) {
+                return found;
+            }
+            //Sparse index around a far query, rings would probe more empty cells than there are slots
+            if (4 * (ring + 1) * (ring + 1) > slotCount) {
+                return scan(latitude, longitude, cosLat, k, outSlots, outDistances);
+            }
+        }
+    }
+
+    //Every slot within radiusMeters, unordered, up to outSlots.length; returns how many
+    public int withinRadius(double latitude, double longitude, double radiusMeters, int[] outSlots) {
+        if (size == 0) {
+            return 0;
+        }
+        double cosLat = Math.cos(Math.toRadians(latitude));
+        double latSpan = radiusMeters / METERS_PER_DEGREE;
+        double lngSpan = radiusMeters / (METERS_PER_DEGREE * Math.max(cosLat, 1e-6));
+        long minY = (long) Math.floor((latitude - latSpan) / cellDegrees);
+        long maxY = (long) Math.floor((latitude + latSpan) / cellDegrees);
+        long minX = (long) Math.floor((longitude - lngSpan) / cellDegrees);
+        long maxX = (long) Math.floor((longitude + lngSpan) / cellDegrees);
+        int found = 0;
+        for (long y = minY; y <= maxY; y++) {
+            for (long x = minX; x <= maxX; x++) {
+                for (int slot = headOf(pack(y, x)); slot != NONE; slot = next[slot]) {
+                    if (distance(latitude, longitude, cosLat, slot) <= radiusMeters) {
+                        if (found == outSlots.length) {
+                            return found;
+                        }
+                        outSlots[found++] = slot;
+                    }
+                }
+            }
+        }
+        return found;
+    }
+
+    private int scan(double latitude, double longitude, double cosLat, int k, int[] outSlots, double[] outDistances) {
+        int found = 0;
+        for (int slot = 0; slot < slotCount; slot++) {
+            if (keys[slot] == null) {
+                continue;
+            }
+            double distance = distance(latitude, longitude, cosLat, slot);
+            if (found < k) {
+                found = insertSorted(outSlots, outDistances, found, slot, distance);
+            } else if (distance < outDistances[k - 1]) {
+                insertSorted(outSlots, outDistances, k - 1, slot, distance);
+            }
+        }
+        return found;
+    }
+
+    private double distance(double latitude, double longitude, double cosLat, int slot) {
+        double dy = (latitudes[slot] - latitude) * METERS_PER_DEGREE;
+        double dx = (longitudes[slot] - longitude) * METERS_PER_DEGREE * cosLat;
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+
+    private static int insertSorted(int[] slots, double[] distances, int count, int slot, double distance) {
+        int i = count;
+        while (i > 0 && distances[i - 1] > distance) {
+            slots[i] = slots[i - 1];
+            distances[i] = distances[i - 1];
+            i--;
+        }
+        slots[i] = slot;
+        distances[i] = distance;
+        return count + 1;
+    }
+
+    private long cellOf(double latitude, double longitude) {
+        return pack((long) Math.floor(latitude / cellDegrees), (long) Math.floor(longitude / cellDegrees));
+    }
+
+    private static long pack(long y, long x) {
+        return (y << 32) ^ (x & 0xffffffffL);
+    }
+
+    private int allocateSlot() {
+        if (freeHead != NONE) {
+            int slot = freeHead;
+            freeHead = next[slot];
+            return slot;
+        }
+        if (slotCount == keys.length) {
+            int capacity = keys.length * 2;
+            latitudes = Arrays.copyOf(latitudes, capacity);
+            longitudes = Arrays.copyOf(longitudes, capacity);
+            keys = Arrays.copyOf(keys, capacity);
+            slotCells = Arrays.copyOf(slotCells, capacity);
+            next = Arrays.copyOf(next, capacity);
+            prev = Arrays.copyOf(prev, capacity);
+        }
+        return slotCount++;
+    }
+
+    private void link(int slot, long cell) {
+        int index = cellIndex(cell, true);
+        int head = cellHeads[index];
+        slotCells[slot] = cell;
+        prev[slot] = NONE;
+        next[slot] = head;
+        if (head != NONE) {
+            prev[head] = slot;
+        }
+        cellHeads[index] = slot;
+    }
+
+    private void unlink(int slot) {
+        if (prev[slot] != NONE) {
+            next[prev[slot]] = next[slot];
+        } else {
+            cellHeads[cellIndex(slotCells[slot], false)] = next[slot];
+        }
+        if (next[slot] != NONE) {
+            prev[next[slot]] = prev[slot];
+        }
+    }
+
+    private int headOf(long cell) {
+        int index = cellIndex(cell, false);
+        return index < 0 ? NONE : cellHeads[index];
+    }
+
+    private int cellIndex(long cell, boolean create) {
+        int mask = cellKeys.length - 1;
+        int index = mix(cell) & mask;
+        while (cellUsed[index]) {
+            if (cellKeys[index] == cell) {
+                return index;
+            }
+            index = (index + 1) & mask;
+        }
+        if (!create) {
+            return NONE;
+        }
+        if ((cellCount + 1) * 2 > cellKeys.length) {
+            growCells();
+            return cellIndex(cell, true);
+        }
+        cellUsed[index] = true;
+        cellKeys[index] = cell;
+        cellHeads[index] = NONE;
+        cellCount++;
+        return index;
+    }
+
+    private void growCells() {
+        long[] oldKeys = cellKeys;
+        int[] oldHeads = cellHeads;
+        boolean[] oldUsed = cellUsed;
+        cellKeys = new long[oldKeys.length * 2];
+        cellHeads = new int[oldKeys.length * 2];
+        cellUsed = new boolean[oldKeys.length * 2];
+        int mask = cellKeys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldUsed[i]) {
+                int index = mix(oldKeys[i]) & mask;
+                while (cellUsed[index]) {
+                    index = (index + 1) & mask;
+                }
+                cellUsed[index] = true;
+                cellKeys[index] = oldKeys[i];
+                cellHeads[index] = oldHeads[i];
+            }
+        }
+    }
+
+    //Bucket holding key, or the empty bucket where it would go
+    private int keyBucket(String key) {
+        int mask = keySlots.length - 1;
+        int index = mix(key.hashCode()) & mask;
+        while (keySlots[index] != NONE && !keys[keySlots[index]].equals(key)) {
+            index = (index + 1) & mask;
+        }
+        return index;
+    }
+
+    //Backward-shift delete, later entries of the probe run move up so lookups never need tombstones
+    private void deleteKey(int hole) {
+        int mask = keySlots.length - 1;
+        int index = hole;
+        while (true) {
+            index = (index + 1) & mask;
+            int slot = keySlots[index];
+            if (slot == NONE) {
+                break;
+            }
+            int home = mix(keys[slot].hashCode()) & mask;
+            //Movable unless its home lies cyclically in (hole, index]
+            boolean between = hole <= index ? hole < home && home <= index : hole < home || home <= index;
+            if (!between) {
+                keySlots[hole] = slot;
+                hole = index;
+            }
+        }
+        keySlots[hole] = NONE;
+    }
+
+    private void growKeys() {
+        keySlots = new int[keySlots.length * 2];
+        Arrays.fill(keySlots, NONE);
+        int mask = keySlots.length - 1;
+        for (int slot = 0; slot < slotCount; slot++) {
+            if (keys[slot] != null) {
+                int index = mix(keys[slot].hashCode()) & mask;
+                while (keySlots[index] != NONE) {
+                    index = (index + 1) & mask;
+                }
+                keySlots[index] = slot;
+            }
+        }
+    }
+
+    private static int mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        return (int) value;
+    }
+}
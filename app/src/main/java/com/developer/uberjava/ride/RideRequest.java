@@ -0,0 +1,87 @@
+package com.developer.uberjava.ride;
+
+import com.developer.uberjava.Common;
+
+import java.util.Map;
+
+//Immutable ride request parsed straight from an FCM data payload, nothing is read from the database
+public class RideRequest {
+
+    private final String requestId;
+    private final String riderUid;
+    private final double pickupLatitude;
+    private final double pickupLongitude;
+    private final String pickupAddress;
+    private final long expiresAtMillis;
+    private final double distanceMeters;
+
+    public RideRequest(String requestId, String riderUid, double pickupLatitude, double pickupLongitude,
+                       String pickupAddress, long expiresAtMillis, double distanceMeters) {
+        this.requestId = requestId;
+        this.riderUid = riderUid;
+        this.pickupLatitude = pickupLatitude;
+        this.pickupLongitude = pickupLongitude;
+        this.pickupAddress = pickupAddress;
+        this.expiresAtMillis = expiresAtMillis;
+        this.distanceMeters = distanceMeters;
+    }
+
+    public static boolean isRideRequest(Map<String, String> data) {
+        return Common.RIDE_REQUEST_TYPE.equals(data.get(Common.NOTI_TYPE));
+    }
+
+    //Null when the payload is missing a field or carries garbage
+    public static RideRequest fromData(Map<String, String> data, long nowMillis) {
+        String requestId = data.get(Common.RIDE_REQUEST_ID);
+        String lat = data.get(Common.RIDE_REQUEST_PICKUP_LAT);
+        String lng = data.get(Common.RIDE_REQUEST_PICKUP_LNG);
+        if (requestId == null || lat == null || lng == null) {
+            return null;
+        }
+        try {
+            String expiresAt = data.get(Common.RIDE_REQUEST_EXPIRES_AT);
+            return new RideRequest(requestId,
+                    data.get(Common.RIDE_REQUEST_RIDER_UID),
+                    Double.parseDouble(lat),
+                    Double.parseDouble(lng),
+                    data.get(Common.RIDE_REQUEST_PICKUP_ADDRESS),
+                    expiresAt != null ? Long.parseLong(expiresAt) : nowMillis + Common.RIDE_REQUEST_DEFAULT_TTL_MS,
+                    Double.NaN);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    public RideRequest withDistanceMeters(double distanceMeters) {
+        return new RideRequest(requestId, riderUid, pickupLatitude, pickupLongitude, pickupAddress, expiresAtMillis, distanceMeters);
+    }
+
+    public String getRequestId() {
+        return requestId;
+    }
+
+    public String getRiderUid() {
+        return riderUid;
+    }
+
+    public double getPickupLatitude() {
+        return pickupLatitude;
+    }
+
+    public double getPickupLongitude() {
+        return pickupLongitude;
+    }
+
+    public String getPickupAddress() {
+        return pickupAddress;
+    }
+
+    public long getExpiresAtMillis() {
+        return expiresAtMillis;
+    }
+
+    //NaN until the driver's position is known
+    public double getDistanceMeters() {
+        return distanceMeters;
+    }
+}
@@ -0,0 +1,212 @@
+package com.developer.uberjava.ride;
+
+import com.developer.uberjava.Common;
+import com.developer.uberjava.utils.GeoMath;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Observable;
+import io.reactivex.Scheduler;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.schedulers.Schedulers;
+import io.reactivex.subjects.BehaviorSubject;
+
+//Pending ride requests ranked nearest pickup first, then soonest expiry. Kept as a small sorted
+//array bounded to capacity; writers take the lock, readers get an immutable snapshot without one.
+//Each membership change re-arms a single timer for the earliest expiry.
+public class RideRequestInbox {
+
+    private static RideRequestInbox instance;
+
+    public static synchronized RideRequestInbox getInstance() {
+        if (instance == null) {
+            instance = new RideRequestInbox(Common.RIDE_INBOX_CAPACITY, Schedulers.computation());
+        }
+        return instance;
+    }
+
+    private final Scheduler scheduler;
+    private final RideRequest[] queue;
+    private final double[] distances;
+    private int size;
+    private double driverLatitude = Double.NaN;
+    private double driverLongitude = Double.NaN;
+    private Disposable expiryTimer;
+
+    private volatile List<RideRequest> snapshot = Collections.emptyList();
+    private final BehaviorSubject<List<RideRequest>> changes = BehaviorSubject.createDefault(snapshot);
+
+    public RideRequestInbox(int capacity, Scheduler scheduler) {
+        this.scheduler = scheduler;
+        this.queue = new RideRequest[capacity];
+        this.distances = new double[capacity];
+    }
+
+    //False when it was already expired, a duplicate, or ranks below a full inbox
+    public synchronized boolean offer(RideRequest request) {
+        long now = scheduler.now(TimeUnit.MILLISECONDS);
+        if (request.getExpiresAtMillis() <= now) {
+            return false;
+        }
+        int existing = indexOf(request.getRequestId());
+        if (existing >= 0) {
+            //Redelivered push, only a later expiry is news
+            if (queue[existing].getExpiresAtMillis() >= request.getExpiresAtMillis()) {
+                return false;
+            }
+            removeAt(existing);
+        }
+        RideRequest ranked = request.withDistanceMeters(distanceTo(request));
+        if (size == queue.length) {
+            if (compare(ranked, queue[size - 1]) >= 0) {
+                return false;
+            }
+            queue[--size] = null;
+        }
+        int index = size;
+        while (index > 0 && compare(ranked, queue[index - 1]) < 0) {
+            queue[index] = queue[index - 1];
+            index--;
+        }
+        queue[index] = ranked;
+        size++;
+        publish(now);
+        return true;
+    }
+
+    public synchronized void remove(String requestId) {
+        int index = indexOf(requestId);
+        if (index >= 0) {
+            removeAt(index);
+            publish(scheduler.now(TimeUnit.MILLISECONDS));
+        }
+    }
+
+    //Runs on every fix, so it allocates and publishes only when the ranking visibly changes.
+    //Expiry doesn't depend on position, the timer is left alone.
+    public synchronized void updateDriverLocation(double latitude, double longitude) {
+        driverLatitude = latitude;
+        driverLongitude = longitude;
+        if (size == 0) {
+            return;
+        }
+        boolean changed = false;
+        for (int i = 0; i < size; i++) {
+            distances[i] = distanceTo(queue[i]);
+            double previous = queue[i].getDistanceMeters();
+            if (Double.isNaN(previous) || Math.abs(distances[i] - previous) >= Common.RIDE_INBOX_DISTANCE_STEP_METERS) {
+                changed = true;
+            } else if (i > 0 && compare(distances[i], queue[i], distances[i - 1], queue[i - 1]) < 0) {
+                changed = true;
+            }
+        }
+        if (!changed) {
+            return;
+        }
+        for (int i = 0; i < size; i++) {
+            queue[i] = queue[i].withDistanceMeters(distances[i]);
+        }
+        for (int i = 1; i < size; i++) {
+            RideRequest current = queue[i];
+            int j = i;
+            while (j > 0 && compare(current, queue[j - 1]) < 0) {
+                queue[j] = queue[j - 1];
+                j--;
+            }
+            queue[j] = current;
+        }
+        publishSnapshot();
+    }
+
+    public synchronized void clear() {
+        Arrays.fill(queue, null);
+        size = 0;
+        publish(scheduler.now(TimeUnit.MILLISECONDS));
+    }
+
+    //Best first, safe to read from any thread
+    public List<RideRequest> snapshot() {
+        return snapshot;
+    }
+
+    public Observable<List<RideRequest>> changes() {
+        return changes;
+    }
+
+    private synchronized void evictExpired() {
+        long now = scheduler.now(TimeUnit.MILLISECONDS);
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            if (queue[i].getExpiresAtMillis() > now) {
+                queue[kept++] = queue[i];
+            }
+        }
+        Arrays.fill(queue, kept, size, null);
+        boolean changed = kept != size;
+        size = kept;
+        if (changed) {
+            publish(now);
+        } else {
+            scheduleExpiry(now);
+        }
+    }
+
+    private void publish(long now) {
+        publishSnapshot();
+        scheduleExpiry(now);
+    }
+
+    private void publishSnapshot() {
+        snapshot = Collections.unmodifiableList(Arrays.asList(Arrays.copyOf(queue, size)));
+        changes.onNext(snapshot);
+    }
+
+    private void scheduleExpiry(long now) {
+        if (expiryTimer != null) {
+            expiryTimer.dispose();
+            expiryTimer = null;
+        }
+        if (size == 0) {
+            return;
+        }
+        long earliest = Long.MAX_VALUE;
+        for (int i = 0; i < size; i++) {
+            earliest = Math.min(earliest, queue[i].getExpiresAtMillis());
+        }
+        expiryTimer = scheduler.scheduleDirect(this::evictExpired, Math.max(0, earliest - now), TimeUnit.MILLISECONDS);
+    }
+
+    private void removeAt(int index) {
+        System.arraycopy(queue, index + 1, queue, index, size - index - 1);
+        queue[--size] = null;
+    }
+
+    private int indexOf(String requestId) {
+        for (int i = 0; i < size; i++) {
+            if (queue[i].getRequestId().equals(requestId)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private double distanceTo(RideRequest request) {
+        if (Double.isNaN(driverLatitude)) {
+            return Double.NaN;
+        }
+        return GeoMath.distanceMeters(driverLatitude, driverLongitude, request.getPickupLatitude(), request.getPickupLongitude());
+    }
+
+    //Unknown distance sorts last, Double.compare already puts NaN above everything
+    private static int compare(RideRequest a, RideRequest b) {
+        return compare(a.getDistanceMeters(), a, b.getDistanceMeters(), b);
+    }
+
+    private static int compare(double distanceA, RideRequest a, double distanceB, RideRequest b) {
+        int byDistance = Double.compare(distanceA, distanceB);
+        return byDistance != 0 ? byDistance : Long.compare(a.getExpiresAtMillis(), b.getExpiresAtMillis());
+    }
+}
@@ -0,0 +1,305 @@
+package com.developer.uberjava.service;
+
+import android.Manifest;
+import android.app.Notification;
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.app.Service;
+import android.content.Context;
+import android.content.Intent;
+import android.content.pm.PackageManager;
+import android.os.Binder;
+import android.os.Build;
+import android.os.IBinder;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+import androidx.core.app.ActivityCompat;
+import androidx.core.app.NotificationCompat;
+import androidx.core.content.ContextCompat;
+
+import com.developer.uberjava.Common;
+import com.developer.uberjava.DriverHomeActivity;
+import com.developer.uberjava.R;
+import com.developer.uberjava.location.AdaptiveLocationScheduler;
+import com.developer.uberjava.location.CityGeocoder;
+import com.developer.uberjava.location.DriverLocationPublisher;
+import com.developer.uberjava.location.GeoHashShardResolver;
+import com.developer.uberjava.location.LocationFix;
+import com.developer.uberjava.location.LocationJournal;
+import com.developer.uberjava.location.LocationTransformers;
+import com.developer.uberjava.location.PipelineMetrics;
+import com.developer.uberjava.location.PresenceManager;
+import com.developer.uberjava.location.RxLocation;
+import com.developer.uberjava.location.ShardResolver;
+import com.developer.uberjava.ride.NearbyPickups;
+import com.developer.uberjava.ride.RideRequestInbox;
+import com.google.android.gms.location.LocationServices;
+import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.auth.FirebaseUser;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.FirebaseDatabase;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Completable;
+import io.reactivex.Flowable;
+import io.reactivex.Observable;
+import io.reactivex.Single;
+import io.reactivex.android.schedulers.AndroidSchedulers;
+import io.reactivex.disposables.CompositeDisposable;
+import io.reactivex.processors.PublishProcessor;
+import io.reactivex.schedulers.Schedulers;
+import io.reactivex.subjects.BehaviorSubject;
+import io.reactivex.subjects.PublishSubject;
+
+//Owns the location pipeline for the whole online session so it survives rotation,
+//navigation and the app going to the background. Screens bind only to follow the fixes.
+public class LocationPublishService extends Service {
+
+    private static final String TAG = "LocationPublishService";
+    private static final String NOTIFICATION_CHANNEL_ID = "driver_location_channel";
+    private static final int NOTIFICATION_ID = 7173;
+
+    public class LocalBinder extends Binder {
+        public LocationPublishService getService() {
+            return LocationPublishService.this;
+        }
+    }
+
+    //Publisher of the running service, main thread only, so sign-out can reach it without binding
+    private static DriverLocationPublisher activePublisher;
+
+    private final IBinder binder = new LocalBinder();
+    private final CompositeDisposable compositeDisposable = new CompositeDisposable();
+    private final BehaviorSubject<LocationFix> latestFix = BehaviorSubject.create();
+    private final PublishSubject<Throwable> errors = PublishSubject.create();
+    private final PublishProcessor<LocationFix> replayedFixes = PublishProcessor.create();
+
+    private AdaptiveLocationScheduler locationScheduler;
+    private DriverLocationPublisher locationPublisher;
+    private PresenceManager presenceManager;
+    private LocationJournal locationJournal;
+    private NearbyPickups nearbyPickups;
+    //Fixes are only journalled once .info/connected has said we're offline, not before it reported
+    private volatile boolean connectionKnown;
+    private volatile boolean isConnected;
+    private String publishedShardName;
+    private final PipelineMetrics metrics = PipelineMetrics.getInstance();
+
+    public static void start(Context context) {
+        ContextCompat.startForegroundService(context, new Intent(context, LocationPublishService.class));
+    }
+
+    public static void stop(Context context) {
+        context.stopService(new Intent(context, LocationPublishService.class));
+    }
+
+    //Stops the service and completes once the driver's GeoFire entry is deleted. stopService
+    //alone only gets to onDestroy later, by then a sign-out may already have dropped the auth.
+    public static Completable goOffline(Context context) {
+        DriverLocationPublisher publisher = activePublisher;
+        Completable removal = publisher != null ? publisher.remove() : Completable.complete();
+        stop(context);
+        return removal;
+    }
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        startForeground(NOTIFICATION_ID, buildNotification());
+
+        FirebaseUser user = FirebaseAuth.getInstance().getCurrentUser();
+        if (user == null || ActivityCompat.checkSelfPermission(this, Manifest.permission.ACCESS_FINE_LOCATION) != PackageManager.PERMISSION_GRANTED
+                && ActivityCompat.checkSelfPermission(this, Manifest.permission.ACCESS_COARSE_LOCATION) != PackageManager.PERMISSION_GRANTED) {
+            stopSelf();
+            return;
+        }
+        startPipeline(user.getUid());
+    }
+
+    @Override
+    public int onStartCommand(Intent intent, int flags, int startId) {
+        return START_STICKY;
+    }
+
+    @Nullable
+    @Override
+    public IBinder onBind(Intent intent) {
+        return binder;
+    }
+
+    public Observable<LocationFix> getFixes() {
+        return latestFix;
+    }
+
+    public Observable<Throwable> getErrors() {
+        return errors;
+    }
+
+    //Main thread only, like the GeoFire callbacks that fill it
+    public NearbyPickups getNearbyPickups() {
+        return nearbyPickups;
+    }
+
+    private void startPipeline(String uid) {
+        ShardResolver shardResolver = timed(Common.DRIVERS_LOCATION_SHARD_MODE == Common.SHARD_BY_GEOHASH
+                ? new GeoHashShardResolver(Common.GEOHASH_SHARD_PRECISION)
+                : new CityGeocoder(this));
+        locationPublisher = new DriverLocationPublisher(uid);
+        activePublisher = locationPublisher;
+        presenceManager = PresenceManager.getInstance();
+        presenceManager.acquire();
+        try {
+            locationJournal = new LocationJournal(new File(getFilesDir(), "location_journal.bin"),
+                    Common.LOCATION_JOURNAL_CAPACITY);
+        } catch (IOException e) {
+            Log.e(TAG, "Unable to open location journal", e);
+        }
+        nearbyPickups = new NearbyPickups();
+        locationScheduler = new AdaptiveLocationScheduler(LocationServices.getFusedLocationProviderClient(this));
+
+        compositeDisposable.add(presenceManager.connectionState().subscribe(connected -> {
+            //The first report also picks up what an earlier session journalled before it died
+            if (connected && (!connectionKnown || !isConnected)) {
+                replayLocationJournal();
+            }
+            isConnected = connected;
+            connectionKnown = true;
+        }));
+
+        Flowable<LocationFix> fixes = RxLocation.locationUpdates(locationScheduler)
+                .map(RxLocation::toFix)
+                .compose(LocationTransformers.smooth(() -> metrics.increment(PipelineMetrics.COUNTER_OUTLIERS)))
+                .share();
+
+        compositeDisposable.add(fixes.subscribe(fix -> {
+            metrics.increment(PipelineMetrics.COUNTER_FIXES);
+            latestFix.onNext(fix);
+            RideRequestInbox.getInstance().updateDriverLocation(fix.getLatitude(), fix.getLongitude());
+            nearbyPickups.updateDriverLocation(fix.getLatitude(), fix.getLongitude());
+        }));
+
+        compositeDisposable.add(fixes
+                .observeOn(Schedulers.computation())
+                .compose(LocationTransformers.journalWhileOffline(() -> {
+                    boolean online = !connectionKnown || isConnected;
+                    if (!online) {
+                        metrics.increment(PipelineMetrics.COUNTER_JOURNALED);
+                    }
+                    return online;
+                }, locationJournal))
+                .mergeWith(replayedFixes)
+                .compose(LocationTransformers.publishPath(shardResolver, this::publishLocation,
+                        Schedulers.computation(), Schedulers.io(), this::onError))
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(this::onLocationPublished, this::onError));
+
+        compositeDisposable.add(Observable.interval(Common.METRICS_DUMP_INTERVAL_MINUTES, TimeUnit.MINUTES)
+                .subscribe(tick -> Log.i(TAG, metrics.getSummary())));
+    }
+
+    private ShardResolver timed(ShardResolver resolver) {
+        return (latitude, longitude) -> {
+            long start = System.nanoTime();
+            try {
+                return resolver.resolve(latitude, longitude);
+            } finally {
+                metrics.increment(PipelineMetrics.COUNTER_SHARD_LOOKUPS);
+                metrics.record(PipelineMetrics.STAGE_GEOCODE, System.nanoTime() - start);
+            }
+        };
+    }
+
+    private Single<LocationFix> publishLocation(LocationFix fix) {
+        return Single.create(emitter -> {
+            long dispatchedAt = System.nanoTime();
+            metrics.record(PipelineMetrics.STAGE_DISPATCH, dispatchedAt - fix.getReceivedAtNanos());
+            metrics.increment(PipelineMetrics.COUNTER_WRITES);
+            locationPublisher.publish(fix.getShardName(), fix.getLatitude(), fix.getLongitude(), (key, error) -> {
+                if (error != null) {
+                    metrics.increment(PipelineMetrics.COUNTER_WRITE_ERRORS);
+                    emitter.tryOnError(error.toException());
+                } else {
+                    long ackedAt = System.nanoTime();
+                    metrics.record(PipelineMetrics.STAGE_SERVER_ACK, ackedAt - dispatchedAt);
+                    metrics.record(PipelineMetrics.STAGE_END_TO_END, ackedAt - fix.getReceivedAtNanos());
+                    emitter.onSuccess(fix);
+                }
+            });
+        });
+    }
+
+    private void onLocationPublished(LocationFix fix) {
+        if (!fix.getShardName().equals(publishedShardName)) {
+            publishedShardName = fix.getShardName();
+            presenceManager.setDisconnectTarget(locationPublisher.getCurrentUserRef());
+        }
+    }
+
+    private void onError(Throwable throwable) {
+        Log.e(TAG, "" + throwable.getMessage());
+        AndroidSchedulers.mainThread().scheduleDirect(() -> errors.onNext(throwable));
+    }
+
+    private void replayLocationJournal() {
+        if (locationJournal == null || locationJournal.isEmpty()) {
+            return;
+        }
+        //Only the newest offline fix goes to GeoFire, the rest is trip history
+        replayedFixes.onNext(new LocationFix(locationJournal.getNewestLatitude(), locationJournal.getNewestLongitude(),
+                0f, Double.NaN, Double.NaN, locationJournal.getNewestTimestamp()));
+
+        DatabaseReference trailRef = FirebaseDatabase.getInstance().getReference(Common.DRIVER_TRAIL_REFERENCE)
+                .child(locationPublisher.getUid());
+        locationJournal.drain(Common.LOCATION_JOURNAL_DRAIN_BATCH, (updates, callback) ->
+                trailRef.updateChildren(updates).addOnCompleteListener(task -> callback.onComplete(task.isSuccessful())));
+    }
+
+    private Notification buildNotification() {
+        NotificationManager notificationManager = (NotificationManager) getSystemService(Context.NOTIFICATION_SERVICE);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            NotificationChannel notificationChannel = new NotificationChannel(NOTIFICATION_CHANNEL_ID,
+                    getString(R.string.driver_location_channel), NotificationManager.IMPORTANCE_LOW);
+            notificationManager.createNotificationChannel(notificationChannel);
+        }
+        PendingIntent pendingIntent = PendingIntent.getActivity(this, NOTIFICATION_ID,
+                new Intent(this, DriverHomeActivity.class), PendingIntent.FLAG_UPDATE_CURRENT);
+        return new NotificationCompat.Builder(this, NOTIFICATION_CHANNEL_ID)
+                .setContentTitle(getString(R.string.app_name))
+                .setContentText(getString(R.string.you_are_online))
+                .setSmallIcon(R.drawable.ic_baseline_directions_car_24)
+                .setContentIntent(pendingIntent)
+                .setOngoing(true)
+                .build();
+    }
+
+    @Override
+    public void onDestroy() {
+        compositeDisposable.clear();
+        if (locationPublisher != null) {
+            locationPublisher.stop();
+            if (activePublisher == locationPublisher) {
+                activePublisher = null;
+            }
+        }
+        if (nearbyPickups != null) {
+            nearbyPickups.stop();
+        }
+        if (presenceManager != null) {
+            presenceManager.setDisconnectTarget(null);
+            presenceManager.release();
+        }
+        if (locationJournal != null) {
+            try {
+                locationJournal.close();
+            } catch (IOException e) {
+                Log.e(TAG, "" + e.getMessage());
+            }
+        }
+        super.onDestroy();
+    }
+}
@@ -3,13 +3,16 @@ package com.developer.uberjava.service;
 import androidx.annotation.NonNull;
 
 import com.developer.uberjava.Common;
+import com.developer.uberjava.R;
+import com.developer.uberjava.notification.NotificationDispatcher;
+import com.developer.uberjava.ride.RideRequest;
+import com.developer.uberjava.ride.RideRequestInbox;
 import com.developer.uberjava.utils.UserUtils;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.messaging.FirebaseMessagingService;
 import com.google.firebase.messaging.RemoteMessage;
 
 import java.util.Map;
-import java.util.Random;
 
 public class MyFirebaseMessagingService extends FirebaseMessagingService {
 
@@ -25,8 +28,16 @@ public class MyFirebaseMessagingService extends FirebaseMessagingService {
     public void onMessageReceived(@NonNull RemoteMessage remoteMessage) {
         super.onMessageReceived(remoteMessage);
         Map<String,String>  dataRecv = remoteMessage.getData();
-        if (dataRecv != null) {
-            Common.showNotification(this,new Random().nextInt(),dataRecv.get(Common.NOTI_TITLE),dataRecv.get(Common.NOTI_CONTENT),null);
+        if (dataRecv != null && RideRequest.isRideRequest(dataRecv)) {
+            RideRequest request = RideRequest.fromData(dataRecv, System.currentTimeMillis());
+            if (request != null && RideRequestInbox.getInstance().offer(request)) {
+                //Same key as the request so a redelivery updates the notification instead of adding one
+                NotificationDispatcher.getInstance(this).show(request.getRequestId(),
+                        getString(R.string.new_ride_request), request.getPickupAddress() != null ? request.getPickupAddress() : "");
+            }
+        } else if (dataRecv != null) {
+            NotificationDispatcher.getInstance(this).show(dataRecv.get(Common.NOTI_COLLAPSE_KEY),
+                    dataRecv.get(Common.NOTI_TITLE),dataRecv.get(Common.NOTI_CONTENT));
         }
     }
 }
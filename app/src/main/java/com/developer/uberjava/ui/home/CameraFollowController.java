@@ -0,0 +1,137 @@
+package com.developer.uberjava.ui.home;
+
+import android.view.Choreographer;
+
+import com.google.android.gms.maps.CameraUpdateFactory;
+import com.google.android.gms.maps.GoogleMap;
+import com.google.android.gms.maps.model.LatLng;
+
+//Keeps the camera on the driver. Each fix starts a glide from where the camera is to the new
+//position, stretched over the time since the previous fix so the motion reads as continuous,
+//and Choreographer steps it once per frame. Frames that would move less than a pixel are
+//skipped and the callback stops once the glide ends. Only the first fix sets the zoom, after
+//that the driver's own zoom is kept. Any map gesture pauses following until resumeFollowing().
+//Main thread only.
+public class CameraFollowController implements Choreographer.FrameCallback {
+
+    private static final float DEFAULT_ZOOM = 18f;
+
+    //Ground resolution at zoom 0 on the equator, per dp of map
+    private static final double METERS_PER_DP_AT_ZOOM_0 = 156543.03392;
+    private static final long MIN_GLIDE_NANOS = 100_000_000L;
+    private static final long MAX_GLIDE_NANOS = 1_500_000_000L;
+
+    private final GoogleMap map;
+    private final float density;
+    private final Choreographer choreographer = Choreographer.getInstance();
+
+    private boolean following = true;
+    private boolean hasPosition;
+    private boolean frameScheduled;
+    private float zoom = DEFAULT_ZOOM;
+    //Glide state, all primitives so a frame allocates nothing until it actually moves the camera
+    private double fromLatitude, fromLongitude;
+    private double toLatitude, toLongitude;
+    private double shownLatitude, shownLongitude;
+    private long glideStartNanos;
+    private long glideNanos;
+    private long lastFixNanos;
+
+    public CameraFollowController(GoogleMap map, float density) {
+        this.map = map;
+        this.density = density;
+        map.setOnCameraMoveStartedListener(reason -> {
+            if (reason == GoogleMap.OnCameraMoveStartedListener.REASON_GESTURE) {
+                pauseFollowing();
+            }
+        });
+        //Our own moves keep the zoom, only a gesture can change it
+        map.setOnCameraIdleListener(() -> {
+            if (!following) {
+                zoom = map.getCameraPosition().zoom;
+            }
+        });
+    }
+
+    public void onFix(double latitude, double longitude) {
+        long now = System.nanoTime();
+        if (!hasPosition) {
+            hasPosition = true;
+            shownLatitude = toLatitude = latitude;
+            shownLongitude = toLongitude = longitude;
+            lastFixNanos = now;
+            if (following) {
+                map.moveCamera(CameraUpdateFactory.newLatLngZoom(new LatLng(latitude, longitude), zoom));
+            }
+            return;
+        }
+        fromLatitude = shownLatitude;
+        fromLongitude = shownLongitude;
+        toLatitude = latitude;
+        toLongitude = longitude;
+        glideStartNanos = now;
+        glideNanos = Math.max(MIN_GLIDE_NANOS, Math.min(MAX_GLIDE_NANOS, now - lastFixNanos));
+        lastFixNanos = now;
+        scheduleFrame();
+    }
+
+    //For the my-location button: glide back onto the driver at the zoom they picked and keep
+    //following. False when no fix has arrived yet, so there is nowhere to go.
+    public boolean resumeFollowing() {
+        following = true;
+        if (!hasPosition) {
+            return false;
+        }
+        shownLatitude = toLatitude;
+        shownLongitude = toLongitude;
+        map.animateCamera(CameraUpdateFactory.newLatLng(new LatLng(toLatitude, toLongitude)));
+        return true;
+    }
+
+    public void stop() {
+        pauseFollowing();
+        map.setOnCameraMoveStartedListener(null);
+        map.setOnCameraIdleListener(null);
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        frameScheduled = false;
+        if (!following) {
+            return;
+        }
+        double progress = glideNanos <= 0 ? 1 : Math.max(0, Math.min(1, (double) (frameTimeNanos - glideStartNanos) / glideNanos));
+        double latitude = fromLatitude + (toLatitude - fromLatitude) * progress;
+        double longitude = fromLongitude + (toLongitude - fromLongitude) * progress;
+        if (movesAtLeastOnePixel(latitude, longitude) || (progress >= 1 && (latitude != shownLatitude || longitude != shownLongitude))) {
+            shownLatitude = latitude;
+            shownLongitude = longitude;
+            map.moveCamera(CameraUpdateFactory.newLatLng(new LatLng(latitude, longitude)));
+        }
+        if (progress < 1) {
+            scheduleFrame();
+        }
+    }
+
+    private boolean movesAtLeastOnePixel(double latitude, double longitude) {
+        double metersPerPixel = METERS_PER_DP_AT_ZOOM_0 * Math.cos(Math.toRadians(latitude)) / Math.pow(2, zoom) / density;
+        double dy = (latitude - shownLatitude) * 111320.0;
+        double dx = (longitude - shownLongitude) * 111320.0 * Math.cos(Math.toRadians(latitude));
+        return dx * dx + dy * dy >= metersPerPixel * metersPerPixel;
+    }
+
+    private void pauseFollowing() {
+        following = false;
+        if (frameScheduled) {
+            choreographer.removeFrameCallback(this);
+            frameScheduled = false;
+        }
+    }
+
+    private void scheduleFrame() {
+        if (following && !frameScheduled) {
+            frameScheduled = true;
+            choreographer.postFrameCallback(this);
+        }
+    }
+}
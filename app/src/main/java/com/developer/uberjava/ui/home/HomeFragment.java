@@ -2,13 +2,13 @@ package com.developer.uberjava.ui.home;
 
 import android.Manifest;
 import android.annotation.SuppressLint;
+import android.content.ComponentName;
+import android.content.Intent;
+import android.content.ServiceConnection;
 import android.content.pm.PackageManager;
 import android.content.res.Resources;
-import android.location.Address;
-import android.location.Geocoder;
-import android.location.Location;
 import android.os.Bundle;
-import android.os.Looper;
+import android.os.IBinder;
 import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -21,30 +21,19 @@ import androidx.core.app.ActivityCompat;
 import androidx.fragment.app.Fragment;
 import androidx.lifecycle.ViewModelProvider;
 
-import com.developer.uberjava.Common;
 import com.developer.uberjava.R;
-import com.firebase.geofire.GeoFire;
-import com.firebase.geofire.GeoLocation;
+import com.developer.uberjava.ride.NearbyPickups;
+import com.developer.uberjava.ride.RideRequestInbox;
+import com.developer.uberjava.service.LocationPublishService;
 import com.google.android.gms.location.FusedLocationProviderClient;
-import com.google.android.gms.location.LocationCallback;
-import com.google.android.gms.location.LocationRequest;
-import com.google.android.gms.location.LocationResult;
 import com.google.android.gms.location.LocationServices;
-import com.google.android.gms.maps.CameraUpdateFactory;
 import com.google.android.gms.maps.GoogleMap;
 import com.google.android.gms.maps.OnMapReadyCallback;
 import com.google.android.gms.maps.SupportMapFragment;
-import com.google.android.gms.maps.model.LatLng;
 import com.google.android.gms.maps.model.MapStyleOptions;
 import com.google.android.gms.tasks.OnFailureListener;
 import com.google.android.gms.tasks.OnSuccessListener;
 import com.google.android.material.snackbar.Snackbar;
-import com.google.firebase.auth.FirebaseAuth;
-import com.google.firebase.database.DataSnapshot;
-import com.google.firebase.database.DatabaseError;
-import com.google.firebase.database.DatabaseReference;
-import com.google.firebase.database.FirebaseDatabase;
-import com.google.firebase.database.ValueEventListener;
 import com.karumi.dexter.Dexter;
 import com.karumi.dexter.PermissionToken;
 import com.karumi.dexter.listener.PermissionDeniedResponse;
@@ -52,45 +41,67 @@ import com.karumi.dexter.listener.PermissionGrantedResponse;
 import com.karumi.dexter.listener.PermissionRequest;
 import com.karumi.dexter.listener.single.PermissionListener;
 
-import java.util.List;
-import java.util.Locale;
+import io.reactivex.android.schedulers.AndroidSchedulers;
+import io.reactivex.disposables.CompositeDisposable;
+import io.reactivex.disposables.Disposable;
 
 public class HomeFragment extends Fragment implements OnMapReadyCallback {
 
     private HomeViewModel homeViewModel;
     private GoogleMap mMap;
+    private CameraFollowController cameraController;
 
     //Location
     private FusedLocationProviderClient fusedLocationProviderClient;
-    private LocationRequest locationRequest;
-    private LocationCallback locationCallback;
     SupportMapFragment mapFragment;
 
-    private boolean isFirstTime = true;
-
-
-    //Online System
-    DatabaseReference onlineRef, currentUserRef, driversLocationRef;
-    GeoFire geoFire;
-    ValueEventListener onlineValueEventListener = new ValueEventListener() {
+    //The location pipeline lives in LocationPublishService, we only follow its fixes
+    private final CompositeDisposable compositeDisposable = new CompositeDisposable();
+    private boolean isBound;
+    private Disposable inboxSubscription;
+    private NearbyPickups nearbyPickups;
+    private final String[] nearestPickupKey = new String[1];
+    private final double[] nearestPickupMeters = new double[1];
+    private final ServiceConnection serviceConnection = new ServiceConnection() {
         @Override
-        public void onDataChange(@NonNull DataSnapshot snapshot) {
-            if (snapshot.exists() && null != currentUserRef) {
-                currentUserRef.onDisconnect().removeValue();
-                isFirstTime = true;
+        public void onServiceConnected(ComponentName name, IBinder service) {
+            LocationPublishService locationService = ((LocationPublishService.LocalBinder) service).getService();
+            compositeDisposable.add(locationService.getFixes()
+                    .observeOn(AndroidSchedulers.mainThread())
+                    .subscribe(fix -> {
+                        if (cameraController != null) {
+                            cameraController.onFix(fix.getLatitude(), fix.getLongitude());
+                        }
+                    }));
+            compositeDisposable.add(locationService.getErrors()
+                    .observeOn(AndroidSchedulers.mainThread())
+                    .subscribe(throwable -> {
+                        if (getView() != null) {
+                            Snackbar.make(getView(), "" + throwable.getMessage(), Snackbar.LENGTH_SHORT).show();
+                        }
+                    }));
+            //Pickup query only runs while this screen is started, GeoFire already calls back on main
+            nearbyPickups = locationService.getNearbyPickups();
+            if (nearbyPickups != null) {
+                nearbyPickups.watch();
+                compositeDisposable.add(nearbyPickups.changes()
+                        .filter(count -> count > 0)
+                        .subscribe(count -> {
+                            if (getView() != null && nearbyPickups.nearestToDriver(1, nearestPickupKey, nearestPickupMeters) > 0) {
+                                Snackbar.make(getView(), getString(R.string.pickups_nearby, count, (int) nearestPickupMeters[0]),
+                                        Snackbar.LENGTH_SHORT).show();
+                            }
+                        }));
             }
         }
 
         @Override
-        public void onCancelled(@NonNull DatabaseError error) {
-            Snackbar.make(mapFragment.getView(), error.getMessage(), Snackbar.LENGTH_SHORT).show();
+        public void onServiceDisconnected(ComponentName name) {
+            compositeDisposable.clear();
+            nearbyPickups = null;
         }
     };
 
-    private void registerOnlineSystem() {
-        onlineRef.addValueEventListener(onlineValueEventListener);
-    }
-
     public View onCreateView(@NonNull LayoutInflater inflater, ViewGroup container, Bundle savedInstanceState) {
         homeViewModel = new ViewModelProvider(this).get(HomeViewModel.class);
         View root = inflater.inflate(R.layout.fragment_home, container, false);
@@ -106,73 +117,20 @@ public class HomeFragment extends Fragment implements OnMapReadyCallback {
 
     private void init() {
 
-        onlineRef = FirebaseDatabase.getInstance().getReference().child(".info/connected");
-
-        if (ActivityCompat.checkSelfPermission(requireContext(), Manifest.permission.ACCESS_FINE_LOCATION) != PackageManager.PERMISSION_GRANTED && ActivityCompat.checkSelfPermission(requireContext(), Manifest.permission.ACCESS_COARSE_LOCATION) != PackageManager.PERMISSION_GRANTED) {
-            Snackbar.make(mapFragment.getView(), getString(R.string.location_permission_required), Snackbar.LENGTH_SHORT).show();
-            return;
-        }
-
-
-        locationRequest = new LocationRequest();
-        locationRequest.setSmallestDisplacement(50f);
-        locationRequest.setInterval(5000);
-        locationRequest.setFastestInterval(10000);
-        locationRequest.setPriority(LocationRequest.PRIORITY_HIGH_ACCURACY);
-
-        locationCallback = new LocationCallback() {
-            @Override
-            public void onLocationResult(LocationResult locationResult) {
-                super.onLocationResult(locationResult);
-                LatLng newPosition = new LatLng(locationResult.getLastLocation().getLatitude(), locationResult.getLastLocation().getLongitude());
-                mMap.moveCamera(CameraUpdateFactory.newLatLngZoom(newPosition, 18f));
-
-                Geocoder geocoder = new Geocoder(requireContext(), Locale.getDefault());
-                List<Address> addressList;
-                try {
-                    addressList = geocoder.getFromLocation(locationResult.getLastLocation().getLatitude(),
-                            locationResult.getLastLocation().getLongitude(), 1);
-                    String cityName = addressList.get(0).getLocality();
-
-                    driversLocationRef = FirebaseDatabase.getInstance().getReference(Common.DRIVERS_LOCATION_REFERENCES).child(cityName);
-                    currentUserRef = driversLocationRef.child(FirebaseAuth.getInstance().getCurrentUser().getUid());
-                    geoFire = new GeoFire(driversLocationRef);
-
-                    //Update location
-                    geoFire.setLocation(FirebaseAuth.getInstance().getCurrentUser().getUid(),
-                            new GeoLocation(locationResult.getLastLocation().getLatitude(),
-                                    locationResult.getLastLocation().getLongitude()),
-                            (key, error) -> {
-                                if (error != null) {
-                                    Snackbar.make(mapFragment.getView(), error.getMessage(), Snackbar.LENGTH_SHORT).show();
-                                }
-                            });
-
-                    registerOnlineSystem();
-
-
-                } catch (Exception e) {
-                    Snackbar.make(getView(), e.getMessage(), Snackbar.LENGTH_SHORT).show();
-                }
-
-
-
-            }
-        };
-
         fusedLocationProviderClient = LocationServices.getFusedLocationProviderClient(requireContext());
 
         if (ActivityCompat.checkSelfPermission(requireContext(), Manifest.permission.ACCESS_FINE_LOCATION) != PackageManager.PERMISSION_GRANTED && ActivityCompat.checkSelfPermission(requireContext(), Manifest.permission.ACCESS_COARSE_LOCATION) != PackageManager.PERMISSION_GRANTED) {
-            Snackbar.make(getView(), getString(R.string.location_permission_required),Snackbar.LENGTH_SHORT).show();
+            Snackbar.make(mapFragment.getView(), getString(R.string.location_permission_required), Snackbar.LENGTH_SHORT).show();
             return;
         }
-        fusedLocationProviderClient.requestLocationUpdates(locationRequest, locationCallback, Looper.myLooper());
 
+        LocationPublishService.start(requireContext());
     }
 
     @Override
     public void onMapReady(GoogleMap googleMap) {
         mMap = googleMap;
+        cameraController = new CameraFollowController(mMap, getResources().getDisplayMetrics().density);
 
         Dexter.withContext(requireContext())
                 .withPermission(Manifest.permission.ACCESS_FINE_LOCATION)
@@ -183,15 +141,19 @@ public class HomeFragment extends Fragment implements OnMapReadyCallback {
                             Snackbar.make(getView(), getString(R.string.location_permission_required),Snackbar.LENGTH_SHORT).show();
                             return;
                         }
+                        LocationPublishService.start(requireContext());
                         mMap.setMyLocationEnabled(true);
                         mMap.getUiSettings().setZoomControlsEnabled(false);
                         mMap.setOnMyLocationButtonClickListener(() -> {
-                            if (null != fusedLocationProviderClient) {
+                            //Back to following the smoothed fixes, the last known location only
+                            //helps before the first one has arrived
+                            if (cameraController != null && !cameraController.resumeFollowing() && null != fusedLocationProviderClient) {
                                 fusedLocationProviderClient.getLastLocation()
                                         .addOnFailureListener(e -> Toast.makeText(requireContext(), e.getMessage(), Toast.LENGTH_SHORT).show())
                                         .addOnSuccessListener(location -> {
-                                            LatLng userLatLng = new LatLng(location.getLatitude(), location.getLongitude());
-                                            mMap.animateCamera(CameraUpdateFactory.newLatLngZoom(userLatLng,18f));
+                                            if (location != null && cameraController != null) {
+                                                cameraController.onFix(location.getLatitude(), location.getLongitude());
+                                            }
                                         });
                             }
                             return true;
@@ -235,18 +197,45 @@ public class HomeFragment extends Fragment implements OnMapReadyCallback {
     }
 
     @Override
-    public void onResume() {
-        super.onResume();
-        registerOnlineSystem();
+    public void onStart() {
+        super.onStart();
+        //Ranked on arrival from the push payload, no database read involved
+        inboxSubscription = RideRequestInbox.getInstance().changes()
+                .filter(requests -> !requests.isEmpty())
+                .map(requests -> requests.get(0))
+                .distinctUntilChanged((previous, current) -> previous.getRequestId().equals(current.getRequestId()))
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(nearest -> {
+                    if (getView() != null) {
+                        int count = RideRequestInbox.getInstance().snapshot().size();
+                        int meters = Double.isNaN(nearest.getDistanceMeters()) ? 0 : (int) nearest.getDistanceMeters();
+                        Snackbar.make(getView(), getString(R.string.ride_requests_nearest, count, meters), Snackbar.LENGTH_LONG).show();
+                    }
+                });
+        isBound = requireContext().bindService(new Intent(requireContext(), LocationPublishService.class), serviceConnection, 0);
+    }
+
+    @Override
+    public void onDestroyView() {
+        if (cameraController != null) {
+            cameraController.stop();
+            cameraController = null;
+        }
+        super.onDestroyView();
     }
 
     @Override
-    public void onDestroy() {
-        fusedLocationProviderClient.removeLocationUpdates(locationCallback);
-        if (null != FirebaseAuth.getInstance().getCurrentUser()) {
-            geoFire.removeLocation(FirebaseAuth.getInstance().getCurrentUser().getUid());
+    public void onStop() {
+        inboxSubscription.dispose();
+        compositeDisposable.clear();
+        if (nearbyPickups != null) {
+            nearbyPickups.unwatch();
+            nearbyPickups = null;
+        }
+        if (isBound) {
+            requireContext().unbindService(serviceConnection);
+            isBound = false;
         }
-        onlineRef.removeEventListener(onlineValueEventListener);
-        super.onDestroy();
+        super.onStop();
     }
 }
\ No newline at end of file
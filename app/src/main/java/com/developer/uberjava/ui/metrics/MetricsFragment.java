@@ -0,0 +1,57 @@
+package com.developer.uberjava.ui.metrics;
+
+import android.os.Bundle;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.Button;
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+import androidx.fragment.app.Fragment;
+
+import com.developer.uberjava.R;
+import com.developer.uberjava.location.PipelineMetrics;
+
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Observable;
+import io.reactivex.android.schedulers.AndroidSchedulers;
+import io.reactivex.disposables.CompositeDisposable;
+
+public class MetricsFragment extends Fragment {
+
+    private final CompositeDisposable compositeDisposable = new CompositeDisposable();
+    private final StringBuilder summaryBuilder = new StringBuilder();
+    private TextView txt_metrics;
+
+    public View onCreateView(@NonNull LayoutInflater inflater, ViewGroup container, Bundle savedInstanceState) {
+        View root = inflater.inflate(R.layout.fragment_metrics, container, false);
+        txt_metrics = root.findViewById(R.id.txt_metrics);
+        Button btn_reset = root.findViewById(R.id.btn_reset_metrics);
+        btn_reset.setOnClickListener(v -> {
+            PipelineMetrics.getInstance().reset();
+            showSummary();
+        });
+        return root;
+    }
+
+    @Override
+    public void onStart() {
+        super.onStart();
+        compositeDisposable.add(Observable.interval(0, 1, TimeUnit.SECONDS, AndroidSchedulers.mainThread())
+                .subscribe(tick -> showSummary()));
+    }
+
+    @Override
+    public void onStop() {
+        compositeDisposable.clear();
+        super.onStop();
+    }
+
+    private void showSummary() {
+        summaryBuilder.setLength(0);
+        PipelineMetrics.getInstance().appendSummary(summaryBuilder);
+        txt_metrics.setText(summaryBuilder.toString());
+    }
+}
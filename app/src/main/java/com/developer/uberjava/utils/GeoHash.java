@@ -0,0 +1,52 @@
+package com.developer.uberjava.utils;
+
+public class GeoHash {
+    public static final int MAX_PRECISION = 12;
+    private static final char[] BASE32 = "0123456789bcdefghjkmnpqrstuvwxyz".toCharArray();
+
+    //Returns the geohash cell as precision * 5 interleaved bits (longitude first)
+    public static long encode(double latitude, double longitude, int precision) {
+        if (precision < 1 || precision > MAX_PRECISION) {
+            throw new IllegalArgumentException("Precision must be between 1 and " + MAX_PRECISION);
+        }
+        double minLat = -90, maxLat = 90;
+        double minLon = -180, maxLon = 180;
+        long bits = 0;
+        int totalBits = precision * 5;
+        for (int i = 0; i < totalBits; i++) {
+            bits <<= 1;
+            if ((i & 1) == 0) {
+                double mid = (minLon + maxLon) / 2;
+                if (longitude >= mid) {
+                    bits |= 1;
+                    minLon = mid;
+                } else {
+                    maxLon = mid;
+                }
+            } else {
+                double mid = (minLat + maxLat) / 2;
+                if (latitude >= mid) {
+                    bits |= 1;
+                    minLat = mid;
+                } else {
+                    maxLat = mid;
+                }
+            }
+        }
+        return bits;
+    }
+
+    //Writes the base32 form of the cell into out[0..precision) without allocating
+    public static void writeBase32(long bits, int precision, char[] out) {
+        for (int i = precision - 1; i >= 0; i--) {
+            out[i] = BASE32[(int) (bits & 31)];
+            bits >>>= 5;
+        }
+    }
+
+    public static String toBase32(long bits, int precision) {
+        char[] chars = new char[precision];
+        writeBase32(bits, precision, chars);
+        return new String(chars);
+    }
+}
@@ -0,0 +1,30 @@
+package com.developer.uberjava.utils;
+
+public class GeoMath {
+    public static final double EARTH_RADIUS_METERS = 6371008.8;
+
+    public static double distanceMeters(double lat1, double lon1, double lat2, double lon2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLon = Math.toRadians(lon2 - lon1);
+        double sinLat = Math.sin(dLat / 2);
+        double sinLon = Math.sin(dLon / 2);
+        double a = sinLat * sinLat + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) * sinLon * sinLon;
+        return 2 * EARTH_RADIUS_METERS * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+
+    //Smallest angle between two headings in degrees, 0 when either heading is unknown (NaN)
+    public static double bearingDelta(double bearing1, double bearing2) {
+        if (Double.isNaN(bearing1) || Double.isNaN(bearing2)) {
+            return 0;
+        }
+        double delta = Math.abs(bearing1 - bearing2) % 360;
+        return delta > 180 ? 360 - delta : delta;
+    }
+
+    //True when the second fix is too close to the first and heads the same way to be worth publishing
+    public static boolean isWithinDeadBand(double lat1, double lon1, double bearing1, double lat2, double lon2, double bearing2,
+                                           double minDistanceMeters, double minBearingDegrees) {
+        return distanceMeters(lat1, lon1, lat2, lon2) < minDistanceMeters
+                && bearingDelta(bearing1, bearing2) < minBearingDegrees;
+    }
+}
@@ -0,0 +1,45 @@
+package com.developer.uberjava.utils;
+
+import android.os.Build;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+//Cold start markers, in milliseconds since the process was forked (API 24+) or since the
+//first marker. Dumped once to logcat as "Startup: auth=..ms profile=..ms ..." when home is shown.
+public class StartupTrace {
+
+    private static final String TAG = "Startup";
+    private static final int MAX_MARKS = 16;
+
+    private static final String[] names = new String[MAX_MARKS];
+    private static final long[] times = new long[MAX_MARKS];
+    private static long origin = -1;
+    private static int count;
+    private static boolean reported;
+
+    public static synchronized void mark(String name) {
+        long now = SystemClock.elapsedRealtime();
+        if (origin < 0) {
+            origin = Build.VERSION.SDK_INT >= Build.VERSION_CODES.N ? Process.getStartElapsedRealtime() : now;
+        }
+        if (reported || count == MAX_MARKS) {
+            return;
+        }
+        names[count] = name;
+        times[count] = now - origin;
+        count++;
+    }
+
+    public static synchronized void report() {
+        if (reported || count == 0) {
+            return;
+        }
+        reported = true;
+        StringBuilder builder = new StringBuilder("Startup:");
+        for (int i = 0; i < count; i++) {
+            builder.append(' ').append(names[i]).append('=').append(times[i]).append("ms");
+        }
+        Log.i(TAG, builder.toString());
+    }
+}
@@ -1,44 +1,23 @@
 package com.developer.uberjava.utils;
 
+import android.annotation.SuppressLint;
 import android.content.Context;
-import android.view.View;
 import android.widget.Toast;
 
-import androidx.annotation.NonNull;
-import androidx.drawerlayout.widget.DrawerLayout;
-
-import com.developer.uberjava.Common;
-import com.developer.uberjava.models.TokenModel;
-import com.developer.uberjava.service.MyFirebaseMessagingService;
-import com.google.android.gms.tasks.OnFailureListener;
-import com.google.android.gms.tasks.OnSuccessListener;
-import com.google.android.material.snackbar.Snackbar;
+import com.developer.uberjava.profile.ProfileSync;
 import com.google.firebase.auth.FirebaseAuth;
-import com.google.firebase.database.FirebaseDatabase;
-
-import org.w3c.dom.Comment;
 
-import java.util.Map;
+import io.reactivex.android.schedulers.AndroidSchedulers;
 
 public class UserUtils {
-    public static void updateUser(View view, Map<String, Object> updateData) {
-        FirebaseDatabase.getInstance().getReference(Common.DRIVER_INFO_REFERENCE)
-                .child(FirebaseAuth.getInstance().getCurrentUser().getUid())
-                .updateChildren(updateData)
-                .addOnFailureListener(e -> Snackbar.make(view,e.getMessage(),Snackbar.LENGTH_SHORT).show())
-                .addOnSuccessListener(aVoid -> Snackbar.make(view,"Update information successfully!",Snackbar.LENGTH_SHORT).show());
-    }
-
+    //Skipped entirely when Token/<uid> already holds this token
+    @SuppressLint("CheckResult")
     public static void updateToken(Context context, String token) {
-        TokenModel tokenModel = new TokenModel(token);
-
-        FirebaseDatabase.getInstance()
-                .getReference(Common.TOKEN_REFERENCE)
-                .child(FirebaseAuth.getInstance().getCurrentUser().getUid())
-                .setValue(token)
-                .addOnFailureListener(e -> Toast.makeText(context,e.getMessage(),Toast.LENGTH_SHORT).show())
-                .addOnSuccessListener(aVoid -> {
+        ProfileSync.getInstance(context)
+                .updateToken(FirebaseAuth.getInstance().getCurrentUser().getUid(), token)
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(() -> {
 
-                });
+                }, e -> Toast.makeText(context,e.getMessage(),Toast.LENGTH_SHORT).show());
     }
 }
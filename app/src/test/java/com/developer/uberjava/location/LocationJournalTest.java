@@ -0,0 +1,139 @@
+package com.developer.uberjava.location;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class LocationJournalTest {
+
+    //Records each batch and leaves the ack to the test
+    private static class FakeWriter implements LocationJournal.BatchWriter {
+        final List<Map<String, Object>> batches = new ArrayList<>();
+        final List<LocationJournal.WriteCallback> callbacks = new ArrayList<>();
+
+        @Override
+        public void write(Map<String, Object> updates, LocationJournal.WriteCallback callback) {
+            batches.add(updates);
+            callbacks.add(callback);
+        }
+
+        void ack(boolean success) {
+            callbacks.get(callbacks.size() - 1).onComplete(success);
+        }
+    }
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File path;
+    private LocationJournal journal;
+
+    @Before
+    public void setUp() throws IOException {
+        path = new File(folder.getRoot(), "journal.bin");
+        journal = new LocationJournal(path, 8);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        journal.close();
+    }
+
+    @Test
+    public void drainsInBatchesUntilEmpty() {
+        for (int i = 0; i < 5; i++) {
+            journal.append(1000 + i, 10.77 + i * 1e-4, 106.70, 5f, 0f);
+        }
+        FakeWriter writer = new FakeWriter();
+        journal.drain(2, writer);
+        assertEquals(1, writer.batches.size());
+        assertEquals(2, writer.batches.get(0).size());
+        writer.ack(true);
+        writer.ack(true);
+        writer.ack(true);
+        assertEquals(3, writer.batches.size());
+        assertEquals(1, writer.batches.get(2).size());
+        assertTrue(journal.isEmpty());
+    }
+
+    @Test
+    public void sameMillisecondRecordsGetDistinctKeys() {
+        journal.append(1000, 10.77, 106.70, 5f, 0f);
+        journal.append(1000, 10.78, 106.71, 5f, 0f);
+        journal.append(1000, 10.79, 106.72, 5f, 0f);
+        FakeWriter writer = new FakeWriter();
+        journal.drain(10, writer);
+        Map<String, Object> batch = writer.batches.get(0);
+        assertEquals(3, batch.size());
+        for (String key : batch.keySet()) {
+            assertTrue(key, key.startsWith("1000-"));
+        }
+    }
+
+    @Test
+    public void failedBatchKeepsRecordsAndRetriesUnderTheSameKeys() {
+        journal.append(1000, 10.77, 106.70, 5f, 0f);
+        journal.append(2000, 10.78, 106.71, 5f, 0f);
+        FakeWriter writer = new FakeWriter();
+        journal.drain(10, writer);
+        writer.ack(false);
+        assertEquals(2, journal.size());
+
+        journal.drain(10, writer);
+        assertEquals(writer.batches.get(0).keySet(), writer.batches.get(1).keySet());
+        writer.ack(true);
+        assertTrue(journal.isEmpty());
+    }
+
+    @Test
+    public void drainsWhileAppendsOverwriteTheOldest() {
+        for (int i = 0; i < 8; i++) {
+            journal.append(1000 + i, 10.77, 106.70, 5f, 0f);
+        }
+        FakeWriter writer = new FakeWriter();
+        journal.drain(4, writer);
+        //Two of the four in flight are pushed out of the ring before the ack
+        journal.append(2000, 10.80, 106.70, 5f, 0f);
+        journal.append(2001, 10.81, 106.70, 5f, 0f);
+        writer.ack(true);
+        assertEquals(2, writer.batches.size());
+        assertFalse(writer.batches.get(1).containsKey("1002-2"));
+        assertTrue(writer.batches.get(1).containsKey("1004-4"));
+        writer.ack(true);
+        writer.ack(true);
+        assertEquals(3, writer.batches.size());
+        assertTrue(writer.batches.get(2).containsKey("2001-9"));
+        assertTrue(journal.isEmpty());
+    }
+
+    @Test
+    public void survivesReopenWithNewestFixAndSequence() throws IOException {
+        journal.append(1000, 10.77, 106.70, 5f, 0f);
+        journal.append(2000, 10.7812345, 106.7054321, 5f, 0f);
+        FakeWriter writer = new FakeWriter();
+        journal.drain(1, writer);
+        writer.ack(true);
+        writer.ack(false);
+        journal.close();
+
+        journal = new LocationJournal(path, 8);
+        assertEquals(1, journal.size());
+        assertEquals(2000, journal.getNewestTimestamp());
+        assertEquals(10.7812345, journal.getNewestLatitude(), 1e-7);
+        assertEquals(106.7054321, journal.getNewestLongitude(), 1e-7);
+        journal.drain(1, writer);
+        assertTrue(writer.batches.get(2).containsKey("2000-1"));
+    }
+}
@@ -0,0 +1,71 @@
+package com.developer.uberjava.utils;
+
+import com.developer.uberjava.location.GeoHashShardResolver;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class GeoHashTest {
+
+    private static String hash(double latitude, double longitude, int precision) {
+        return GeoHash.toBase32(GeoHash.encode(latitude, longitude, precision), precision);
+    }
+
+    @Test
+    public void encodesReferenceHashes() {
+        assertEquals("ezs42", hash(42.605, -5.603, 5));
+        assertEquals("u4pruydqqvj", hash(57.64911, 10.40744, 11));
+        assertEquals("9q8yy", hash(37.7749, -122.4194, 5));
+        assertEquals("s0000", hash(0, 0, 5));
+    }
+
+    @Test
+    public void encodesTheEdgesOfTheWorld() {
+        assertEquals("000000000000", hash(-90, -180, 12));
+        assertEquals("zzzzzzzzzzzz", hash(90, 180, 12));
+        assertEquals("pbpbpbpbpbpb", hash(-90, 180, 12));
+        assertEquals("bpbpbpbpbpbp", hash(90, -180, 12));
+    }
+
+    @Test
+    public void splitsNeighboursAcrossCellBoundaries() {
+        double epsilon = 1e-9;
+        //Prime meridian and equator, the first bit of each axis flips
+        assertNotEquals(hash(10, -epsilon, 1), hash(10, 0, 1));
+        assertNotEquals(hash(-epsilon, 10, 1), hash(0, 10, 1));
+        //A precision 5 cell is 360 / 2^13 degrees wide, its west edge belongs to it
+        double width = 360.0 / (1 << 13);
+        double edge = 106 * width;
+        assertEquals(hash(10.76, edge, 5), hash(10.76, edge + width / 2, 5));
+        assertNotEquals(hash(10.76, edge - epsilon, 5), hash(10.76, edge, 5));
+    }
+
+    @Test
+    public void shorterHashIsPrefixOfLonger() {
+        double[][] points = {{10.7769, 106.7009}, {-33.8688, 151.2093}, {51.5074, -0.1278}, {-90, -180}, {90, 180}};
+        for (double[] point : points) {
+            String full = hash(point[0], point[1], GeoHash.MAX_PRECISION);
+            for (int precision = 1; precision < GeoHash.MAX_PRECISION; precision++) {
+                assertTrue(full.startsWith(hash(point[0], point[1], precision)));
+            }
+        }
+    }
+
+    @Test
+    public void shardResolverMatchesEncoderAndReusesName() {
+        GeoHashShardResolver resolver = new GeoHashShardResolver(5);
+        String shard = resolver.resolve(10.7769, 106.7009);
+        assertEquals(hash(10.7769, 106.7009, 5), shard);
+        assertSame(shard, resolver.resolve(10.7770, 106.7010));
+        assertNotEquals(shard, resolver.resolve(-10.7769, 106.7009));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsPrecisionOutOfRange() {
+        GeoHash.encode(0, 0, GeoHash.MAX_PRECISION + 1);
+    }
+}
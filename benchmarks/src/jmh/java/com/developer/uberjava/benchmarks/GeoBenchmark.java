@@ -0,0 +1,80 @@
+package com.developer.uberjava.benchmarks;
+
+import com.developer.uberjava.Common;
+import com.developer.uberjava.location.GeoHashShardResolver;
+import com.developer.uberjava.utils.GeoHash;
+import com.developer.uberjava.utils.GeoMath;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+//The math every fix goes through before it can be published: geohash for the shard and the
+//GeoFire key, haversine and bearing for the dead-band. Two fixes ~12m apart in Ho Chi Minh City.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class GeoBenchmark {
+
+    private static final int GEOFIRE_PRECISION = 10;
+
+    //Not final, so the JIT cannot fold the inputs into constants
+    private double latitude = 10.7769;
+    private double longitude = 106.7009;
+    private double bearing = 42.0;
+    private double nextLatitude = 10.77698;
+    private double nextLongitude = 106.70098;
+    private double nextBearing = 47.5;
+    private final char[] buffer = new char[GEOFIRE_PRECISION];
+    private GeoHashShardResolver shardResolver;
+
+    @Setup
+    public void setUp() {
+        shardResolver = new GeoHashShardResolver(Common.GEOHASH_SHARD_PRECISION);
+        shardResolver.resolve(latitude, longitude);
+    }
+
+    @Benchmark
+    public long geohashEncode() {
+        return GeoHash.encode(latitude, longitude, GEOFIRE_PRECISION);
+    }
+
+    @Benchmark
+    public char[] geohashWriteBase32() {
+        GeoHash.writeBase32(GeoHash.encode(latitude, longitude, GEOFIRE_PRECISION), GEOFIRE_PRECISION, buffer);
+        return buffer;
+    }
+
+    @Benchmark
+    public String geohashToBase32() {
+        return GeoHash.toBase32(GeoHash.encode(latitude, longitude, GEOFIRE_PRECISION), GEOFIRE_PRECISION);
+    }
+
+    //Same cell as the last fix, the common case, should not allocate
+    @Benchmark
+    public String shardResolveSameCell() {
+        return shardResolver.resolve(nextLatitude, nextLongitude);
+    }
+
+    @Benchmark
+    public double distanceMeters() {
+        return GeoMath.distanceMeters(latitude, longitude, nextLatitude, nextLongitude);
+    }
+
+    @Benchmark
+    public double bearingDelta() {
+        return GeoMath.bearingDelta(bearing, nextBearing);
+    }
+
+    @Benchmark
+    public boolean deadBand() {
+        return GeoMath.isWithinDeadBand(latitude, longitude, bearing, nextLatitude, nextLongitude, nextBearing,
+                Common.PUBLISH_MIN_DISTANCE_METERS, Common.PUBLISH_MIN_BEARING_DEGREES);
+    }
+}
@@ -0,0 +1,69 @@
+package com.developer.uberjava.benchmarks;
+
+import com.developer.uberjava.models.DriverInfoModel;
+import com.developer.uberjava.models.DriverInfoModelCodec;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+//Generated DriverInfoModelCodec against the reflective mapping it replaces
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ModelCodecBenchmark {
+
+    private DriverInfoModel model;
+    private DriverInfoModel changed;
+    private Map<String, Object> snapshotValue;
+
+    @Setup
+    public void setUp() {
+        model = new DriverInfoModel();
+        model.setFirstName("Nguyen");
+        model.setLastName("Van A");
+        model.setPhoneNumber("+84901234567");
+        model.setAvatar("https://firebasestorage.googleapis.com/v0/b/uber/o/avatars%2Fuid.jpg");
+        model.setRating(4.8);
+
+        changed = DriverInfoModelCodec.copy(model);
+        changed.setAvatar(model.getAvatar() + "?v=2");
+
+        //What DataSnapshot.getValue() hands back: whole numbers arrive as Long
+        snapshotValue = new HashMap<>(DriverInfoModelCodec.encode(model));
+        snapshotValue.put(DriverInfoModelCodec.RATING, 5L);
+    }
+
+    @Benchmark
+    public Map<String, Object> encodeGenerated() {
+        return DriverInfoModelCodec.encode(model);
+    }
+
+    @Benchmark
+    public Map<String, Object> encodeReflective() throws ReflectiveOperationException {
+        return ReflectiveMapper.serialize(model);
+    }
+
+    @Benchmark
+    public DriverInfoModel decodeGenerated() {
+        return DriverInfoModelCodec.decode(snapshotValue);
+    }
+
+    @Benchmark
+    public DriverInfoModel decodeReflective() throws ReflectiveOperationException {
+        return ReflectiveMapper.deserialize(snapshotValue, DriverInfoModel.class);
+    }
+
+    @Benchmark
+    public Map<String, Object> diffGenerated() {
+        return DriverInfoModelCodec.diff(model, changed);
+    }
+}
@@ -0,0 +1,65 @@
+package com.developer.uberjava.benchmarks;
+
+import com.developer.uberjava.Common;
+import com.developer.uberjava.ride.RideRequest;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+//What onMessageReceived does with RemoteMessage.getData() before anything touches the UI
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class NotificationPayloadBenchmark {
+
+    private static final long NOW = 1602900000000L;
+
+    private Map<String, String> rideRequest;
+    private Map<String, String> malformedRideRequest;
+    private Map<String, String> plainNotification;
+
+    @Setup
+    public void setUp() {
+        rideRequest = new HashMap<>();
+        rideRequest.put(Common.NOTI_TYPE, Common.RIDE_REQUEST_TYPE);
+        rideRequest.put(Common.RIDE_REQUEST_ID, "-MJqLx3bU0cPq2vNf8Zk");
+        rideRequest.put(Common.RIDE_REQUEST_RIDER_UID, "r1Qw8sT0fXb5YzKpLmN2");
+        rideRequest.put(Common.RIDE_REQUEST_PICKUP_LAT, "10.7769");
+        rideRequest.put(Common.RIDE_REQUEST_PICKUP_LNG, "106.7009");
+        rideRequest.put(Common.RIDE_REQUEST_PICKUP_ADDRESS, "Ben Thanh Market, District 1");
+        rideRequest.put(Common.RIDE_REQUEST_EXPIRES_AT, String.valueOf(NOW + 30000));
+
+        malformedRideRequest = new HashMap<>(rideRequest);
+        malformedRideRequest.put(Common.RIDE_REQUEST_PICKUP_LAT, "10,7769");
+
+        plainNotification = new HashMap<>();
+        plainNotification.put(Common.NOTI_TITLE, "Uber");
+        plainNotification.put(Common.NOTI_CONTENT, "Your weekly summary is ready");
+        plainNotification.put(Common.NOTI_COLLAPSE_KEY, "weekly_summary");
+    }
+
+    @Benchmark
+    public RideRequest parseRideRequest() {
+        return RideRequest.isRideRequest(rideRequest) ? RideRequest.fromData(rideRequest, NOW) : null;
+    }
+
+    //Parse failures go through NumberFormatException, worth knowing what that costs
+    @Benchmark
+    public RideRequest parseMalformedRideRequest() {
+        return RideRequest.isRideRequest(malformedRideRequest) ? RideRequest.fromData(malformedRideRequest, NOW) : null;
+    }
+
+    @Benchmark
+    public boolean classifyPlainNotification() {
+        return RideRequest.isRideRequest(plainNotification);
+    }
+}
@@ -0,0 +1,122 @@
+package com.developer.uberjava.benchmarks;
+
+import com.developer.uberjava.ride.PickupSpatialIndex;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+//PickupSpatialIndex queries and churn against a linear scan over the same points,
+//spread over a ~20km square around Ho Chi Minh City
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PickupIndexBenchmark {
+
+    private static final double CENTER_LAT = 10.7769;
+    private static final double CENTER_LNG = 106.7009;
+    private static final double SPREAD_DEGREES = 0.18;
+    private static final int K = 10;
+    private static final double RADIUS_METERS = 1000;
+
+    @Param({"10000", "100000"})
+    public int points;
+
+    private PickupSpatialIndex index;
+    private double[] latitudes;
+    private double[] longitudes;
+    private String[] keys;
+    private final int[] slots = new int[K];
+    private final double[] distances = new double[K];
+    private int[] radiusSlots;
+    private double queryLat;
+    private double queryLng;
+    private int churn;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        latitudes = new double[points];
+        longitudes = new double[points];
+        keys = new String[points];
+        index = new PickupSpatialIndex(250, points);
+        for (int i = 0; i < points; i++) {
+            latitudes[i] = CENTER_LAT + (random.nextDouble() - 0.5) * SPREAD_DEGREES;
+            longitudes[i] = CENTER_LNG + (random.nextDouble() - 0.5) * SPREAD_DEGREES;
+            keys[i] = "pickup" + i;
+            index.put(keys[i], latitudes[i], longitudes[i]);
+        }
+        radiusSlots = new int[points];
+        queryLat = CENTER_LAT + 0.01;
+        queryLng = CENTER_LNG - 0.02;
+    }
+
+    @Benchmark
+    public int nearestIndexed() {
+        return index.nearest(queryLat, queryLng, K, slots, distances);
+    }
+
+    @Benchmark
+    public int nearestLinearScan() {
+        double cosLat = Math.cos(Math.toRadians(queryLat));
+        int found = 0;
+        for (int i = 0; i < points; i++) {
+            double dy = (latitudes[i] - queryLat) * 111320.0;
+            double dx = (longitudes[i] - queryLng) * 111320.0 * cosLat;
+            double distance = Math.sqrt(dx * dx + dy * dy);
+            if (found == K && distance >= distances[K - 1]) {
+                continue;
+            }
+            int j = found < K ? found++ : K - 1;
+            while (j > 0 && distances[j - 1] > distance) {
+                slots[j] = slots[j - 1];
+                distances[j] = distances[j - 1];
+                j--;
+            }
+            slots[j] = i;
+            distances[j] = distance;
+        }
+        return found;
+    }
+
+    @Benchmark
+    public int withinRadiusIndexed() {
+        return index.withinRadius(queryLat, queryLng, RADIUS_METERS, radiusSlots);
+    }
+
+    @Benchmark
+    public int withinRadiusLinearScan() {
+        double cosLat = Math.cos(Math.toRadians(queryLat));
+        int found = 0;
+        for (int i = 0; i < points; i++) {
+            double dy = (latitudes[i] - queryLat) * 111320.0;
+            double dx = (longitudes[i] - queryLng) * 111320.0 * cosLat;
+            if (Math.sqrt(dx * dx + dy * dy) <= RADIUS_METERS) {
+                radiusSlots[found++] = i;
+            }
+        }
+        return found;
+    }
+
+    //What a burst of onKeyExited/onKeyEntered costs: a pickup leaves and comes back mirrored
+    //across the center, the next pass puts it back where it was
+    @Benchmark
+    public int removeAndInsert() {
+        int i = churn % points;
+        boolean mirrored = (churn / points) % 2 == 0;
+        churn++;
+        index.remove(keys[i]);
+        double lat = mirrored ? 2 * CENTER_LAT - latitudes[i] : latitudes[i];
+        double lng = mirrored ? 2 * CENTER_LNG - longitudes[i] : longitudes[i];
+        index.put(keys[i], lat, lng);
+        return index.size();
+    }
+}
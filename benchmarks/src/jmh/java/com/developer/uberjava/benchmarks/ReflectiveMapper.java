@@ -0,0 +1,90 @@
+package com.developer.uberjava.benchmarks;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+//Baseline shaped like Firebase's CustomClassMapper, which can't run outside Android: bean
+//properties found by reflection once per class, then Method.invoke and boxing per field.
+final class ReflectiveMapper {
+
+    private static final class BeanMapper {
+        final Map<String, Method> getters = new HashMap<>();
+        final Map<String, Method> setters = new HashMap<>();
+
+        BeanMapper(Class<?> type) {
+            for (Method method : type.getMethods()) {
+                if (Modifier.isStatic(method.getModifiers()) || method.getDeclaringClass() == Object.class) {
+                    continue;
+                }
+                String name = method.getName();
+                if (name.startsWith("get") && name.length() > 3 && method.getParameterTypes().length == 0) {
+                    getters.put(propertyName(name.substring(3)), method);
+                } else if (name.startsWith("set") && name.length() > 3 && method.getParameterTypes().length == 1) {
+                    setters.put(propertyName(name.substring(3)), method);
+                }
+            }
+        }
+    }
+
+    private static final Map<Class<?>, BeanMapper> mappers = new ConcurrentHashMap<>();
+
+    private ReflectiveMapper() {
+    }
+
+    static Map<String, Object> serialize(Object bean) throws ReflectiveOperationException {
+        BeanMapper mapper = mapperFor(bean.getClass());
+        Map<String, Object> map = new HashMap<>();
+        for (Map.Entry<String, Method> entry : mapper.getters.entrySet()) {
+            map.put(entry.getKey(), entry.getValue().invoke(bean));
+        }
+        return map;
+    }
+
+    static <T> T deserialize(Map<String, Object> map, Class<T> type) throws ReflectiveOperationException {
+        BeanMapper mapper = mapperFor(type);
+        T bean = type.getConstructor().newInstance();
+        for (Map.Entry<String, Object> entry : map.entrySet()) {
+            Method setter = mapper.setters.get(entry.getKey());
+            if (setter != null && entry.getValue() != null) {
+                setter.invoke(bean, convert(entry.getValue(), setter.getParameterTypes()[0]));
+            }
+        }
+        return bean;
+    }
+
+    private static Object convert(Object value, Class<?> type) {
+        if (value instanceof Number) {
+            Number number = (Number) value;
+            if (type == double.class || type == Double.class) {
+                return number.doubleValue();
+            } else if (type == long.class || type == Long.class) {
+                return number.longValue();
+            } else if (type == int.class || type == Integer.class) {
+                return number.intValue();
+            } else if (type == float.class || type == Float.class) {
+                return number.floatValue();
+            }
+        }
+        return type.cast(value);
+    }
+
+    private static BeanMapper mapperFor(Class<?> type) {
+        BeanMapper mapper = mappers.get(type);
+        if (mapper == null) {
+            mapper = new BeanMapper(type);
+            mappers.put(type, mapper);
+        }
+        return mapper;
+    }
+
+    private static String propertyName(String suffix) {
+        char[] chars = suffix.toCharArray();
+        for (int i = 0; i < chars.length && Character.isUpperCase(chars[i]); i++) {
+            chars[i] = Character.toLowerCase(chars[i]);
+        }
+        return new String(chars);
+    }
+}
@@ -0,0 +1,48 @@
+package com.developer.uberjava.benchmarks;
+
+import com.developer.uberjava.Common;
+import com.developer.uberjava.models.DriverInfoModel;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.TimeUnit;
+
+//Common.buildWelcomeMessage runs on every profile emission that reaches the drawer header
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class WelcomeMessageBenchmark {
+
+    private DriverInfoModel driver;
+
+    @Setup
+    public void setUp() {
+        driver = new DriverInfoModel();
+        driver.setFirstName("Nguyen");
+        driver.setLastName("Van A");
+    }
+
+    @TearDown
+    public void tearDown() {
+        Common.currentUser = null;
+    }
+
+    @Benchmark
+    public String signedIn() {
+        Common.currentUser = driver;
+        return Common.buildWelcomeMessage();
+    }
+
+    @Benchmark
+    public String signedOut() {
+        Common.currentUser = null;
+        return Common.buildWelcomeMessage();
+    }
+}
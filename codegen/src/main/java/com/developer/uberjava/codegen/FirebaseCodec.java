@@ -0,0 +1,14 @@
+package com.developer.uberjava.codegen;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+//Generates <Model>Codec next to the annotated class with encode/decode/diff/copy between the
+//model and the Map<String, Object> form Firebase reads and writes, without the reflective mapper.
+//Properties are getX/isX + setX pairs named the way Firebase names them.
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.TYPE)
+public @interface FirebaseCodec {
+}
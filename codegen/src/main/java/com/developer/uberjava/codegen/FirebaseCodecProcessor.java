@@ -0,0 +1,321 @@
+package com.developer.uberjava.codegen;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+
+@SupportedAnnotationTypes("com.developer.uberjava.codegen.FirebaseCodec")
+public class FirebaseCodecProcessor extends AbstractProcessor {
+
+    //How a property is read back from the boxed values Firebase hands out
+    private enum Kind {
+        STRING("String", "asString(%s, \"%s\")"),
+        BOOLEAN("Boolean", "asBoolean(%s, \"%s\")"),
+        INT("Integer", "asNumber(%s, \"%s\").intValue()"),
+        LONG("Long", "asNumber(%s, \"%s\").longValue()"),
+        DOUBLE("Double", "asNumber(%s, \"%s\").doubleValue()"),
+        FLOAT("Float", "asNumber(%s, \"%s\").floatValue()");
+
+        final String boxedName;
+        final String readPattern;
+
+        Kind(String boxedName, String readPattern) {
+            this.boxedName = boxedName;
+            this.readPattern = readPattern;
+        }
+    }
+
+    private static class Property {
+        final String name;
+        final String getter;
+        final String setter;
+        final Kind kind;
+        final boolean primitive;
+
+        Property(String name, String getter, String setter, Kind kind, boolean primitive) {
+            this.name = name;
+            this.getter = getter;
+            this.setter = setter;
+            this.kind = kind;
+            this.primitive = primitive;
+        }
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (Element element : roundEnv.getElementsAnnotatedWith(FirebaseCodec.class)) {
+            if (element.getKind() != ElementKind.CLASS || element.getEnclosingElement().getKind() != ElementKind.PACKAGE) {
+                error(element, "@FirebaseCodec only applies to top level classes");
+                continue;
+            }
+            TypeElement type = (TypeElement) element;
+            List<Property> properties = collectProperties(type);
+            if (properties == null) {
+                continue;
+            }
+            try {
+                writeCodec(type, properties);
+            } catch (IOException e) {
+                error(type, "Unable to write codec: " + e.getMessage());
+            }
+        }
+        return true;
+    }
+
+    private List<Property> collectProperties(TypeElement type) {
+        boolean hasDefaultConstructor = false;
+        for (ExecutableElement constructor : ElementFilter.constructorsIn(type.getEnclosedElements())) {
+            if (constructor.getParameters().isEmpty() && constructor.getModifiers().contains(Modifier.PUBLIC)) {
+                hasDefaultConstructor = true;
+            }
+        }
+        if (!hasDefaultConstructor || type.getModifiers().contains(Modifier.ABSTRACT)) {
+            error(type, "@FirebaseCodec needs a concrete class with a public no-arg constructor");
+            return null;
+        }
+
+        Map<String, ExecutableElement> getters = new LinkedHashMap<>();
+        Map<String, ExecutableElement> setters = new LinkedHashMap<>();
+        for (TypeElement current = type; current != null; current = superclassOf(current)) {
+            for (ExecutableElement method : ElementFilter.methodsIn(current.getEnclosedElements())) {
+                if (!method.getModifiers().contains(Modifier.PUBLIC) || method.getModifiers().contains(Modifier.STATIC)) {
+                    continue;
+                }
+                String methodName = method.getSimpleName().toString();
+                int params = method.getParameters().size();
+                TypeKind returnKind = method.getReturnType().getKind();
+                if (params == 0 && returnKind != TypeKind.VOID && methodName.startsWith("get") && methodName.length() > 3) {
+                    putIfAbsent(getters, propertyName(methodName, 3), method);
+                } else if (params == 0 && returnKind == TypeKind.BOOLEAN && methodName.startsWith("is") && methodName.length() > 2) {
+                    putIfAbsent(getters, propertyName(methodName, 2), method);
+                } else if (params == 1 && methodName.startsWith("set") && methodName.length() > 3) {
+                    putIfAbsent(setters, propertyName(methodName, 3), method);
+                }
+            }
+        }
+
+        List<Property> properties = new ArrayList<>();
+        for (Map.Entry<String, ExecutableElement> entry : getters.entrySet()) {
+            ExecutableElement getter = entry.getValue();
+            ExecutableElement setter = setters.get(entry.getKey());
+            if (setter == null) {
+                continue;
+            }
+            TypeMirror propertyType = getter.getReturnType();
+            if (!processingEnv.getTypeUtils().isSameType(propertyType, setter.getParameters().get(0).asType())) {
+                error(setter, "Setter type doesn't match " + getter.getSimpleName());
+                return null;
+            }
+            Kind kind = kindOf(propertyType);
+            if (kind == null) {
+                error(getter, "Unsupported @FirebaseCodec property type " + propertyType);
+                return null;
+            }
+            properties.add(new Property(entry.getKey(), getter.getSimpleName().toString(), setter.getSimpleName().toString(),
+                    kind, propertyType.getKind().isPrimitive()));
+        }
+        return properties;
+    }
+
+    private TypeElement superclassOf(TypeElement type) {
+        TypeMirror superclass = type.getSuperclass();
+        if (superclass.getKind() != TypeKind.DECLARED) {
+            return null;
+        }
+        TypeElement element = (TypeElement) ((DeclaredType) superclass).asElement();
+        return element.getQualifiedName().contentEquals("java.lang.Object") ? null : element;
+    }
+
+    private static void putIfAbsent(Map<String, ExecutableElement> map, String key, ExecutableElement value) {
+        if (!map.containsKey(key)) {
+            map.put(key, value);
+        }
+    }
+
+    //Same rule as Firebase's mapper: leading capitals are lowercased, getURL -> url
+    private static String propertyName(String methodName, int prefixLength) {
+        char[] chars = methodName.substring(prefixLength).toCharArray();
+        for (int i = 0; i < chars.length && Character.isUpperCase(chars[i]); i++) {
+            chars[i] = Character.toLowerCase(chars[i]);
+        }
+        return new String(chars);
+    }
+
+    private static Kind kindOf(TypeMirror type) {
+        switch (type.getKind()) {
+            case BOOLEAN:
+                return Kind.BOOLEAN;
+            case INT:
+                return Kind.INT;
+            case LONG:
+                return Kind.LONG;
+            case DOUBLE:
+                return Kind.DOUBLE;
+            case FLOAT:
+                return Kind.FLOAT;
+            case DECLARED:
+                String name = ((TypeElement) ((DeclaredType) type).asElement()).getQualifiedName().toString();
+                if (name.equals("java.lang.String")) {
+                    return Kind.STRING;
+                }
+                for (Kind kind : Kind.values()) {
+                    if (name.equals("java.lang." + kind.boxedName)) {
+                        return kind;
+                    }
+                }
+                return null;
+            default:
+                return null;
+        }
+    }
+
+    private void writeCodec(TypeElement type, List<Property> properties) throws IOException {
+        String packageName = ((PackageElement) type.getEnclosingElement()).getQualifiedName().toString();
+        String model = type.getSimpleName().toString();
+        String codec = model + "Codec";
+
+        StringBuilder out = new StringBuilder();
+        out.append("package ").append(packageName).append(";\n\n");
+        out.append("import java.util.HashMap;\n");
+        out.append("import java.util.Map;\n\n");
+        out.append("//Generated by FirebaseCodecProcessor from ").append(model).append(", do not edit\n");
+        out.append("public final class ").append(codec).append(" {\n\n");
+
+        for (Property property : properties) {
+            out.append("    public static final String ").append(constantName(property.name))
+                    .append(" = \"").append(property.name).append("\";\n");
+        }
+        out.append("\n    private ").append(codec).append("() {\n    }\n\n");
+
+        out.append("    public static Map<String, Object> encode(").append(model).append(" model) {\n");
+        out.append("        Map<String, Object> map = new HashMap<>(").append(properties.size() * 2).append(");\n");
+        for (Property property : properties) {
+            out.append("        map.put(").append(constantName(property.name)).append(", model.")
+                    .append(property.getter).append("());\n");
+        }
+        out.append("        return map;\n    }\n\n");
+
+        out.append("    //Takes DataSnapshot.getValue(), null when there is nothing at the path\n");
+        out.append("    public static ").append(model).append(" decode(Object value) {\n");
+        out.append("        if (value == null) {\n            return null;\n        }\n");
+        out.append("        if (!(value instanceof Map)) {\n");
+        out.append("            throw new IllegalArgumentException(\"Can't convert \" + value.getClass().getSimpleName() + \" to ")
+                .append(model).append("\");\n        }\n");
+        out.append("        Map<?, ?> map = (Map<?, ?>) value;\n");
+        out.append("        ").append(model).append(" model = new ").append(model).append("();\n");
+        out.append("        Object field;\n");
+        for (Property property : properties) {
+            String key = constantName(property.name);
+            out.append("        if ((field = map.get(").append(key).append(")) != null) {\n");
+            out.append("            model.").append(property.setter).append("(")
+                    .append(String.format(property.kind.readPattern, "field", property.name)).append(");\n");
+            out.append("        }\n");
+        }
+        out.append("        return model;\n    }\n\n");
+
+        out.append("    //Only the changed properties, ready for updateChildren. Everything when before is null.\n");
+        out.append("    public static Map<String, Object> diff(").append(model).append(" before, ").append(model).append(" after) {\n");
+        out.append("        if (before == null) {\n            return encode(after);\n        }\n");
+        out.append("        Map<String, Object> updates = new HashMap<>();\n");
+        for (Property property : properties) {
+            String before = "before." + property.getter + "()";
+            String after = "after." + property.getter + "()";
+            String changed;
+            if (!property.primitive) {
+                changed = "!java.util.Objects.equals(" + before + ", " + after + ")";
+            } else if (property.kind == Kind.DOUBLE) {
+                changed = "Double.compare(" + before + ", " + after + ") != 0";
+            } else if (property.kind == Kind.FLOAT) {
+                changed = "Float.compare(" + before + ", " + after + ") != 0";
+            } else {
+                changed = before + " != " + after;
+            }
+            out.append("        if (").append(changed).append(") {\n");
+            out.append("            updates.put(").append(constantName(property.name)).append(", ").append(after).append(");\n");
+            out.append("        }\n");
+        }
+        out.append("        return updates;\n    }\n\n");
+
+        out.append("    public static ").append(model).append(" copy(").append(model).append(" model) {\n");
+        out.append("        ").append(model).append(" copy = new ").append(model).append("();\n");
+        for (Property property : properties) {
+            out.append("        copy.").append(property.setter).append("(model.").append(property.getter).append("());\n");
+        }
+        out.append("        return copy;\n    }\n\n");
+
+        //Readers only for the kinds this model has, so no codec carries an unused private method
+        boolean hasString = false, hasBoolean = false, hasNumber = false;
+        for (Property property : properties) {
+            hasString |= property.kind == Kind.STRING;
+            hasBoolean |= property.kind == Kind.BOOLEAN;
+            hasNumber |= property.kind != Kind.STRING && property.kind != Kind.BOOLEAN;
+        }
+        if (hasString) {
+            out.append("    private static String asString(Object value, String name) {\n");
+            out.append("        if (value instanceof String) {\n            return (String) value;\n        }\n");
+            out.append("        throw mismatch(value, \"String\", name);\n    }\n\n");
+        }
+        if (hasBoolean) {
+            out.append("    private static Boolean asBoolean(Object value, String name) {\n");
+            out.append("        if (value instanceof Boolean) {\n            return (Boolean) value;\n        }\n");
+            out.append("        throw mismatch(value, \"Boolean\", name);\n    }\n\n");
+        }
+        if (hasNumber) {
+            out.append("    private static Number asNumber(Object value, String name) {\n");
+            out.append("        if (value instanceof Number) {\n            return (Number) value;\n        }\n");
+            out.append("        throw mismatch(value, \"Number\", name);\n    }\n\n");
+        }
+        if (hasString || hasBoolean || hasNumber) {
+            out.append("    private static IllegalArgumentException mismatch(Object value, String expected, String name) {\n");
+            out.append("        return new IllegalArgumentException(\"Can't convert \" + value.getClass().getSimpleName() + \" to \" + expected + \" for ")
+                    .append(model).append(".\" + name);\n    }\n");
+        }
+        out.append("}\n");
+
+        try (Writer writer = processingEnv.getFiler().createSourceFile(packageName + "." + codec, type).openWriter()) {
+            writer.write(out.toString());
+        }
+    }
+
+    //firstName -> FIRST_NAME
+    private static String constantName(String property) {
+        StringBuilder builder = new StringBuilder(property.length() + 4);
+        for (int i = 0; i < property.length(); i++) {
+            char c = property.charAt(i);
+            if (Character.isUpperCase(c) && i > 0) {
+                builder.append('_');
+            }
+            builder.append(Character.toUpperCase(c));
+        }
+        return builder.toString();
+    }
+
+    private void error(Element element, String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+}
@@ -0,0 +1,54 @@
+package com.developer.uberjava.loadgen;
+
+import com.google.firebase.database.FirebaseDatabase;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+//One FirebaseApp, so one websocket, shared by a group of drivers. Dropping it is what a
+//phone losing signal looks like to the server: every onDisconnect armed through it fires.
+class DriverConnection {
+
+    private final FirebaseDatabase database;
+    private final LoadStats stats;
+    private final List<VirtualDriver> drivers = new ArrayList<>();
+    private volatile boolean offline;
+
+    DriverConnection(FirebaseDatabase database, LoadStats stats) {
+        this.database = database;
+        this.stats = stats;
+    }
+
+    FirebaseDatabase getDatabase() {
+        return database;
+    }
+
+    void add(VirtualDriver driver) {
+        drivers.add(driver);
+    }
+
+    boolean isOffline() {
+        return offline;
+    }
+
+    //Goes offline for offlineMillis, then reconnects, re-arms presence and republishes at once
+    //like LocationPublishService does after a reconnect
+    void drop(long offlineMillis, ScheduledExecutorService executor) {
+        if (offline) {
+            return;
+        }
+        offline = true;
+        stats.connectionDrops.increment();
+        database.goOffline();
+        executor.schedule(() -> {
+            database.goOnline();
+            offline = false;
+            for (VirtualDriver driver : drivers) {
+                driver.armPresence();
+                driver.publish();
+            }
+        }, offlineMillis, TimeUnit.MILLISECONDS);
+    }
+}
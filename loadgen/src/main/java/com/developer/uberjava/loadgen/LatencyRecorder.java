@@ -0,0 +1,46 @@
+package com.developer.uberjava.loadgen;
+
+import java.util.Arrays;
+
+//Ack latencies in microseconds, kept whole so the percentiles are exact. One window for the
+//periodic report and one for the whole run.
+class LatencyRecorder {
+
+    private long[] window = new long[1024];
+    private int windowSize;
+    private long[] total = new long[1024];
+    private int totalSize;
+
+    synchronized void record(long micros) {
+        if (windowSize == window.length) {
+            window = Arrays.copyOf(window, windowSize * 2);
+        }
+        window[windowSize++] = micros;
+        if (totalSize == total.length) {
+            total = Arrays.copyOf(total, totalSize * 2);
+        }
+        total[totalSize++] = micros;
+    }
+
+    //Sorted latencies since the last call
+    synchronized long[] drainWindow() {
+        long[] drained = Arrays.copyOf(window, windowSize);
+        windowSize = 0;
+        Arrays.sort(drained);
+        return drained;
+    }
+
+    synchronized long[] sortedTotal() {
+        long[] sorted = Arrays.copyOf(total, totalSize);
+        Arrays.sort(sorted);
+        return sorted;
+    }
+
+    static long percentile(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(sorted.length * percentile / 100.0);
+        return sorted[Math.max(0, rank - 1)];
+    }
+}
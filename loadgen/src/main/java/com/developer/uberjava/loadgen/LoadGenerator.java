@@ -0,0 +1,271 @@
+package com.developer.uberjava.loadgen;
+
+import com.developer.uberjava.Common;
+import com.google.auth.oauth2.AccessToken;
+import com.google.auth.oauth2.GoogleCredentials;
+import com.google.firebase.FirebaseApp;
+import com.google.firebase.FirebaseOptions;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.ValueEventListener;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+//Command line entry point, every option has a default:
+//  --drivers 1000 --connections 20 --interval-ms 10000 --duration 60 --city LoadTest
+//  --lat 10.7769 --lng 106.7009 --spread-km 10 --riders 50 --radius-km 3
+//  --drops-per-min 2 --offline-ms 5000 --emulator localhost:9000 --ns uberjava-loadgen
+//  --threads 4 --report-seconds 5 --keep
+//Drivers write into DriversLocation/<city>/<uid> at interval-ms (10s is PUBLISH_MIN_INTERVAL_MS
+//in the app), spread evenly over the interval. Every drop takes one connection offline, which
+//fires the onDisconnect of each driver on it. Riders listen the way GeoFire queries do.
+public class LoadGenerator {
+
+    //The emulator treats this token as an admin
+    private static final String EMULATOR_ADMIN_TOKEN = "owner";
+    private static final long CONNECT_TIMEOUT_SECONDS = 15;
+
+    public static void main(String[] args) throws Exception {
+        int drivers = 1000;
+        int connections = 20;
+        long intervalMillis = Common.PUBLISH_MIN_INTERVAL_MS;
+        long durationSeconds = 60;
+        String city = "LoadTest";
+        double latitude = 10.7769, longitude = 106.7009;
+        double spreadKm = 10;
+        int riders = 50;
+        double radiusKm = 3;
+        double dropsPerMinute = 2;
+        long offlineMillis = 5000;
+        String emulator = "localhost:9000";
+        String namespace = "uberjava-loadgen";
+        int threads = 4;
+        long reportSeconds = 5;
+        boolean keep = false;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--drivers":
+                    drivers = Integer.parseInt(args[++i]);
+                    break;
+                case "--connections":
+                    connections = Integer.parseInt(args[++i]);
+                    break;
+                case "--interval-ms":
+                    intervalMillis = Long.parseLong(args[++i]);
+                    break;
+                case "--duration":
+                    durationSeconds = Long.parseLong(args[++i]);
+                    break;
+                case "--city":
+                    city = args[++i];
+                    break;
+                case "--lat":
+                    latitude = Double.parseDouble(args[++i]);
+                    break;
+                case "--lng":
+                    longitude = Double.parseDouble(args[++i]);
+                    break;
+                case "--spread-km":
+                    spreadKm = Double.parseDouble(args[++i]);
+                    break;
+                case "--riders":
+                    riders = Integer.parseInt(args[++i]);
+                    break;
+                case "--radius-km":
+                    radiusKm = Double.parseDouble(args[++i]);
+                    break;
+                case "--drops-per-min":
+                    dropsPerMinute = Double.parseDouble(args[++i]);
+                    break;
+                case "--offline-ms":
+                    offlineMillis = Long.parseLong(args[++i]);
+                    break;
+                case "--emulator":
+                    emulator = args[++i];
+                    break;
+                case "--ns":
+                    namespace = args[++i];
+                    break;
+                case "--threads":
+                    threads = Integer.parseInt(args[++i]);
+                    break;
+                case "--report-seconds":
+                    reportSeconds = Long.parseLong(args[++i]);
+                    break;
+                case "--keep":
+                    keep = true;
+                    break;
+                default:
+                    System.err.println("Unknown option " + args[i]);
+                    System.exit(2);
+            }
+        }
+        connections = Math.max(1, Math.min(connections, drivers));
+        long offlineFor = offlineMillis;
+        double reportWindow = reportSeconds;
+
+        String databaseUrl = "http://" + emulator + "?ns=" + namespace;
+        LoadStats stats = new LoadStats();
+        ScheduledExecutorService executor = Executors.newScheduledThreadPool(threads);
+        Random random = new Random(42);
+        double spreadDegrees = spreadKm * 1000 / 111320.0;
+        String cityPath = Common.DRIVERS_LOCATION_REFERENCES + "/" + city;
+
+        List<FirebaseApp> apps = new ArrayList<>();
+        List<DriverConnection> driverConnections = new ArrayList<>();
+        for (int i = 0; i < connections; i++) {
+            FirebaseApp app = initializeApp(databaseUrl, "driver-connection-" + i);
+            apps.add(app);
+            driverConnections.add(new DriverConnection(FirebaseDatabase.getInstance(app), stats));
+        }
+        FirebaseApp riderApp = initializeApp(databaseUrl, "riders");
+        apps.add(riderApp);
+        //Without a server every write just queues in the client and the run reports zeros
+        if (!awaitConnected(FirebaseDatabase.getInstance(riderApp), CONNECT_TIMEOUT_SECONDS)) {
+            System.err.println("No database at " + databaseUrl + " after " + CONNECT_TIMEOUT_SECONDS
+                    + "s, start it with: firebase emulators:start --only database --config loadgen/firebase.json");
+            System.exit(1);
+        }
+
+        System.out.println(drivers + " drivers on " + connections + " connections every " + intervalMillis + "ms into "
+                + cityPath + " at " + databaseUrl + ", " + riders + " riders within " + radiusKm + "km, "
+                + dropsPerMinute + " drops/min");
+
+        List<RiderQuery> riderQueries = new ArrayList<>();
+        DatabaseReference riderCityRef = FirebaseDatabase.getInstance(riderApp).getReference(cityPath);
+        int rangeQueries = 0;
+        for (int i = 0; i < riders; i++) {
+            RiderQuery query = new RiderQuery(riderCityRef,
+                    latitude + (random.nextDouble() - 0.5) * 2 * spreadDegrees,
+                    longitude + (random.nextDouble() - 0.5) * 2 * spreadDegrees,
+                    radiusKm * 1000, stats);
+            rangeQueries += query.getQueryCount();
+            riderQueries.add(query);
+        }
+
+        double stepSeconds = intervalMillis / 1000.0;
+        for (int i = 0; i < drivers; i++) {
+            DriverConnection connection = driverConnections.get(i % connections);
+            String uid = "driver-" + i;
+            VirtualDriver driver = new VirtualDriver(uid, connection.getDatabase().getReference(cityPath).child(uid),
+                    stats, random.nextLong(), latitude, longitude, spreadDegrees);
+            connection.add(driver);
+            driver.armPresence();
+            //Offline drivers keep moving but skip their writes; drop() publishes the newest position
+            //on reconnect, which is all the app replays to GeoFire
+            executor.scheduleAtFixedRate(() -> {
+                driver.step(stepSeconds);
+                if (!connection.isOffline()) {
+                    driver.publish();
+                }
+            }, (long) (random.nextDouble() * intervalMillis), intervalMillis, TimeUnit.MILLISECONDS);
+        }
+
+        if (dropsPerMinute > 0) {
+            long dropEveryMillis = (long) (60000 / dropsPerMinute);
+            executor.scheduleAtFixedRate(() -> driverConnections.get(random.nextInt(driverConnections.size()))
+                    .drop(offlineFor, executor), dropEveryMillis, dropEveryMillis, TimeUnit.MILLISECONDS);
+        }
+
+        long startNanos = System.nanoTime();
+        long[] previous = new long[3];
+        executor.scheduleAtFixedRate(() -> {
+            long writes = stats.writes.sum();
+            long acks = stats.acks.sum();
+            long events = stats.riderEvents.sum();
+            long[] window = stats.ackLatency.drainWindow();
+            System.out.println(String.format("%4ds  %7.1f writes/s  %7.1f acks/s  ack p50 %5.1fms p95 %5.1fms p99 %5.1fms"
+                            + "  rider events %8.1f/s  fan-out %5.2f  drops %d  errors %d",
+                    TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - startNanos),
+                    (writes - previous[2]) / reportWindow,
+                    (acks - previous[0]) / reportWindow,
+                    millis(LatencyRecorder.percentile(window, 50)),
+                    millis(LatencyRecorder.percentile(window, 95)),
+                    millis(LatencyRecorder.percentile(window, 99)),
+                    (events - previous[1]) / reportWindow,
+                    acks == previous[0] ? 0 : (events - previous[1]) / (double) (acks - previous[0]),
+                    stats.connectionDrops.sum(), stats.errors.sum()));
+            previous[0] = acks;
+            previous[1] = events;
+            previous[2] = writes;
+        }, reportSeconds, reportSeconds, TimeUnit.SECONDS);
+
+        Thread.sleep(TimeUnit.SECONDS.toMillis(durationSeconds));
+        executor.shutdownNow();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+        double elapsed = seconds(startNanos);
+
+        long[] latencies = stats.ackLatency.sortedTotal();
+        System.out.println();
+        System.out.println(String.format("writes %d (%.1f/s), acks %d (%.1f/s), errors %d",
+                stats.writes.sum(), stats.writes.sum() / elapsed, stats.acks.sum(), stats.acks.sum() / elapsed, stats.errors.sum()));
+        System.out.println(String.format("ack latency p50 %.1fms p90 %.1fms p95 %.1fms p99 %.1fms p99.9 %.1fms max %.1fms",
+                millis(LatencyRecorder.percentile(latencies, 50)), millis(LatencyRecorder.percentile(latencies, 90)),
+                millis(LatencyRecorder.percentile(latencies, 95)), millis(LatencyRecorder.percentile(latencies, 99)),
+                millis(LatencyRecorder.percentile(latencies, 99.9)), millis(LatencyRecorder.percentile(latencies, 100))));
+        System.out.println(String.format("presence arms %d, connection drops %d", stats.presenceArms.sum(), stats.connectionDrops.sum()));
+        System.out.println(String.format("riders %d on %d range queries, %d events (%.1f/s), fan-out %.2f events per write",
+                riders, rangeQueries, stats.riderEvents.sum(), stats.riderEvents.sum() / elapsed,
+                stats.acks.sum() == 0 ? 0 : stats.riderEvents.sum() / (double) stats.acks.sum()));
+
+        for (RiderQuery query : riderQueries) {
+            query.detach();
+        }
+        if (!keep) {
+            FirebaseDatabase.getInstance(riderApp).getReference(cityPath).removeValueAsync().get(30, TimeUnit.SECONDS);
+        }
+        for (FirebaseApp app : apps) {
+            app.delete();
+        }
+        System.exit(0);
+    }
+
+    private static FirebaseApp initializeApp(String databaseUrl, String name) {
+        FirebaseOptions options = new FirebaseOptions.Builder()
+                .setCredentials(GoogleCredentials.create(new AccessToken(EMULATOR_ADMIN_TOKEN, new Date(Long.MAX_VALUE))))
+                .setDatabaseUrl(databaseUrl)
+                .build();
+        return FirebaseApp.initializeApp(options, name);
+    }
+
+    private static boolean awaitConnected(FirebaseDatabase database, long timeoutSeconds) throws InterruptedException {
+        CountDownLatch connected = new CountDownLatch(1);
+        DatabaseReference connectedRef = database.getReference(".info/connected");
+        ValueEventListener listener = new ValueEventListener() {
+            @Override
+            public void onDataChange(DataSnapshot snapshot) {
+                if (Boolean.TRUE.equals(snapshot.getValue(Boolean.class))) {
+                    connected.countDown();
+                }
+            }
+
+            @Override
+            public void onCancelled(DatabaseError error) {
+                System.err.println(error.getMessage());
+            }
+        };
+        connectedRef.addValueEventListener(listener);
+        try {
+            return connected.await(timeoutSeconds, TimeUnit.SECONDS);
+        } finally {
+            connectedRef.removeEventListener(listener);
+        }
+    }
+
+    private static double seconds(long startNanos) {
+        return Math.max(1e-9, (System.nanoTime() - startNanos) / 1e9);
+    }
+
+    private static double millis(long micros) {
+        return micros / 1000.0;
+    }
+}
@@ -0,0 +1,14 @@
+package com.developer.uberjava.loadgen;
+
+import java.util.concurrent.atomic.LongAdder;
+
+//Counters shared by every driver, connection and rider callback thread
+class LoadStats {
+    final LongAdder writes = new LongAdder();
+    final LongAdder acks = new LongAdder();
+    final LongAdder errors = new LongAdder();
+    final LongAdder presenceArms = new LongAdder();
+    final LongAdder connectionDrops = new LongAdder();
+    final LongAdder riderEvents = new LongAdder();
+    final LatencyRecorder ackLatency = new LatencyRecorder();
+}
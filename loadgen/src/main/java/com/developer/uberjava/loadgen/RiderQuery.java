@@ -0,0 +1,100 @@
+package com.developer.uberjava.loadgen;
+
+import com.developer.uberjava.utils.GeoHash;
+import com.google.firebase.database.ChildEventListener;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.Query;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+//A rider app looking for cars: like a GeoFire query, one orderByChild("g") range per geohash
+//cell around the rider, coarse enough that the 3x3 block covers the radius. Every child event
+//delivered counts towards fan-out.
+class RiderQuery {
+
+    private static final double METERS_PER_DEGREE = 111320.0;
+
+    private final List<Query> queries = new ArrayList<>();
+    private final ChildEventListener listener;
+
+    RiderQuery(DatabaseReference cityRef, double latitude, double longitude, double radiusMeters, LoadStats stats) {
+        listener = new ChildEventListener() {
+            @Override
+            public void onChildAdded(DataSnapshot snapshot, String previousChildName) {
+                stats.riderEvents.increment();
+            }
+
+            @Override
+            public void onChildChanged(DataSnapshot snapshot, String previousChildName) {
+                stats.riderEvents.increment();
+            }
+
+            @Override
+            public void onChildRemoved(DataSnapshot snapshot) {
+                stats.riderEvents.increment();
+            }
+
+            @Override
+            public void onChildMoved(DataSnapshot snapshot, String previousChildName) {
+            }
+
+            @Override
+            public void onCancelled(DatabaseError error) {
+                stats.errors.increment();
+            }
+        };
+        for (String prefix : cellsAround(latitude, longitude, radiusMeters)) {
+            Query query = cityRef.orderByChild("g").startAt(prefix).endAt(prefix + "~");
+            query.addChildEventListener(listener);
+            queries.add(query);
+        }
+    }
+
+    int getQueryCount() {
+        return queries.size();
+    }
+
+    void detach() {
+        for (Query query : queries) {
+            query.removeEventListener(listener);
+        }
+    }
+
+    static Set<String> cellsAround(double latitude, double longitude, double radiusMeters) {
+        int precision = precisionFor(latitude, radiusMeters);
+        double[] size = cellSizeDegrees(precision);
+        Set<String> prefixes = new LinkedHashSet<>();
+        for (int dy = -1; dy <= 1; dy++) {
+            for (int dx = -1; dx <= 1; dx++) {
+                prefixes.add(GeoHash.toBase32(GeoHash.encode(latitude + dy * size[0], longitude + dx * size[1], precision), precision));
+            }
+        }
+        return prefixes;
+    }
+
+    //Finest precision whose cells are still at least radiusMeters on their shorter side
+    private static int precisionFor(double latitude, double radiusMeters) {
+        for (int precision = GeoHash.MAX_PRECISION; precision > 1; precision--) {
+            double[] size = cellSizeDegrees(precision);
+            double heightMeters = size[0] * METERS_PER_DEGREE;
+            double widthMeters = size[1] * METERS_PER_DEGREE * Math.cos(Math.toRadians(latitude));
+            if (Math.min(heightMeters, widthMeters) >= radiusMeters) {
+                return precision;
+            }
+        }
+        return 1;
+    }
+
+    //{height, width} in degrees, longitude takes the extra bit when the count is odd
+    private static double[] cellSizeDegrees(int precision) {
+        int bits = precision * 5;
+        int lonBits = (bits + 1) / 2;
+        int latBits = bits / 2;
+        return new double[]{180.0 / (1L << latBits), 360.0 / (1L << lonBits)};
+    }
+}
@@ -0,0 +1,87 @@
+package com.developer.uberjava.loadgen;
+
+import com.developer.uberjava.utils.GeoHash;
+import com.google.firebase.database.DatabaseReference;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+//One simulated driver: wanders around the city at street speed and writes the same node
+//GeoFire.setLocation does, {"g": geohash, "l": [lat, lng]} with the geohash as priority
+class VirtualDriver {
+
+    private static final int GEOFIRE_PRECISION = 10;
+    private static final double METERS_PER_DEGREE = 111320.0;
+
+    private final String uid;
+    private final DatabaseReference ref;
+    private final LoadStats stats;
+    private final Random random;
+    private final double centerLatitude, centerLongitude, spreadDegrees;
+    private double latitude, longitude, heading;
+
+    VirtualDriver(String uid, DatabaseReference ref, LoadStats stats, long seed,
+                  double centerLatitude, double centerLongitude, double spreadDegrees) {
+        this.uid = uid;
+        this.ref = ref;
+        this.stats = stats;
+        this.random = new Random(seed);
+        this.centerLatitude = centerLatitude;
+        this.centerLongitude = centerLongitude;
+        this.spreadDegrees = spreadDegrees;
+        latitude = centerLatitude + (random.nextDouble() - 0.5) * 2 * spreadDegrees;
+        longitude = centerLongitude + (random.nextDouble() - 0.5) * 2 * spreadDegrees;
+        heading = random.nextDouble() * 360;
+    }
+
+    String getUid() {
+        return uid;
+    }
+
+    //Moves for seconds at 5..15 m/s, turning now and then and bouncing off the city edge
+    synchronized void step(double seconds) {
+        heading += random.nextGaussian() * 20;
+        double meters = (5 + random.nextDouble() * 10) * seconds;
+        latitude += meters * Math.cos(Math.toRadians(heading)) / METERS_PER_DEGREE;
+        longitude += meters * Math.sin(Math.toRadians(heading)) / (METERS_PER_DEGREE * Math.cos(Math.toRadians(latitude)));
+        if (Math.abs(latitude - centerLatitude) > spreadDegrees || Math.abs(longitude - centerLongitude) > spreadDegrees) {
+            heading += 180;
+            latitude = clamp(latitude, centerLatitude);
+            longitude = clamp(longitude, centerLongitude);
+        }
+    }
+
+    synchronized void publish() {
+        String geohash = GeoHash.toBase32(GeoHash.encode(latitude, longitude, GEOFIRE_PRECISION), GEOFIRE_PRECISION);
+        Map<String, Object> location = new HashMap<>();
+        location.put("g", geohash);
+        location.put("l", Arrays.asList(latitude, longitude));
+        long start = System.nanoTime();
+        stats.writes.increment();
+        ref.setValue(location, geohash, (error, reference) -> {
+            if (error != null) {
+                stats.errors.increment();
+            } else {
+                stats.acks.increment();
+                stats.ackLatency.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+            }
+        });
+    }
+
+    //What PresenceManager arms after every (re)connect
+    void armPresence() {
+        stats.presenceArms.increment();
+        ref.onDisconnect().removeValue((error, reference) -> {
+            if (error != null) {
+                stats.errors.increment();
+            }
+        });
+    }
+
+    private double clamp(double value, double center) {
+        return Math.max(center - spreadDegrees, Math.min(center + spreadDegrees, value));
+    }
+}
@@ -0,0 +1,53 @@
+package com.developer.uberjava.simulator;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.TreeMap;
+
+//In-memory stand-in for the Realtime Database. Keeps the last JSON value per path and counts
+//what the client would have sent: one message per set/remove/onDisconnect, sized as path + payload.
+public class FakeDatabase {
+
+    private final Map<String, String> values = new TreeMap<>();
+    private long writes;
+    private long controlMessages;
+    private long bytesSent;
+
+    public void setValue(String path, String json) {
+        values.put(path, json);
+        writes++;
+        count(path, json);
+    }
+
+    public void removeValue(String path) {
+        values.remove(path);
+        writes++;
+        count(path, "null");
+    }
+
+    //onDisconnect().removeValue() and onDisconnect().cancel() cost a round trip but change nothing yet
+    public void onDisconnect(String path, String action) {
+        controlMessages++;
+        count(path, action);
+    }
+
+    public String getValue(String path) {
+        return values.get(path);
+    }
+
+    public long getWrites() {
+        return writes;
+    }
+
+    public long getControlMessages() {
+        return controlMessages;
+    }
+
+    public long getBytesSent() {
+        return bytesSent;
+    }
+
+    private void count(String path, String payload) {
+        bytesSent += path.getBytes(StandardCharsets.UTF_8).length + payload.getBytes(StandardCharsets.UTF_8).length;
+    }
+}
@@ -0,0 +1,34 @@
+package com.developer.uberjava.simulator;
+
+import com.developer.uberjava.utils.GeoHash;
+
+import java.util.Locale;
+
+//Writes the same node GeoFire.setLocation does: {".priority": g, "g": g, "l": [lat, lng]}
+//with g a precision 10 geohash
+public class FakeGeoFire {
+
+    private static final int GEOFIRE_PRECISION = 10;
+
+    private final FakeDatabase database;
+    private final String path;
+
+    public FakeGeoFire(FakeDatabase database, String path) {
+        this.database = database;
+        this.path = path;
+    }
+
+    public void setLocation(String key, double latitude, double longitude) {
+        String geohash = GeoHash.toBase32(GeoHash.encode(latitude, longitude, GEOFIRE_PRECISION), GEOFIRE_PRECISION);
+        database.setValue(path + "/" + key, String.format(Locale.US,
+                "{\".priority\":\"%s\",\"g\":\"%s\",\"l\":[%s,%s]}", geohash, geohash, latitude, longitude));
+    }
+
+    public void removeLocation(String key) {
+        database.removeValue(path + "/" + key);
+    }
+
+    public String getPath() {
+        return path;
+    }
+}
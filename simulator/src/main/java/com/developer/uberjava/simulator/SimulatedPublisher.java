@@ -0,0 +1,48 @@
+package com.developer.uberjava.simulator;
+
+import com.developer.uberjava.Common;
+
+import java.util.HashMap;
+import java.util.Map;
+
+//DriverLocationPublisher and the PresenceManager re-arm from LocationPublishService, against
+//FakeGeoFire: moving to another shard cancels the old onDisconnect, removes the old entry
+//and arms onDisconnect on the new one
+public class SimulatedPublisher {
+
+    private final FakeDatabase database;
+    private final String uid;
+    private final Map<String, FakeGeoFire> shards = new HashMap<>();
+    private FakeGeoFire currentShard;
+    private String currentShardName;
+
+    public SimulatedPublisher(FakeDatabase database, String uid) {
+        this.database = database;
+        this.uid = uid;
+    }
+
+    public void publish(String shardName, double latitude, double longitude) {
+        boolean changed = !shardName.equals(currentShardName);
+        if (changed) {
+            if (currentShard != null) {
+                database.onDisconnect(currentShard.getPath() + "/" + uid, "cancel");
+                currentShard.removeLocation(uid);
+            }
+            FakeGeoFire shard = shards.get(shardName);
+            if (shard == null) {
+                shard = new FakeGeoFire(database, Common.DRIVERS_LOCATION_REFERENCES + "/" + shardName);
+                shards.put(shardName, shard);
+            }
+            currentShardName = shardName;
+            currentShard = shard;
+        }
+        currentShard.setLocation(uid, latitude, longitude);
+        if (changed) {
+            database.onDisconnect(currentShard.getPath() + "/" + uid, "remove");
+        }
+    }
+
+    public int getShardCount() {
+        return shards.size();
+    }
+}
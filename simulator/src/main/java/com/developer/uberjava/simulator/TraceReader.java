@@ -0,0 +1,115 @@
+package com.developer.uberjava.simulator;
+
+import com.developer.uberjava.location.LocationFix;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+//Loads a recorded trace as the LocationFix list RxLocation.toFix would have produced.
+//CSV: time_ms,latitude,longitude[,accuracy[,speed[,bearing]]], blank columns mean not reported.
+//GPX: every trkpt with its <time>; hdop becomes accuracy, GPX 1.0 <speed>/<course> are kept.
+public class TraceReader {
+
+    //Roughly what fused location reports per unit of HDOP on phones
+    private static final float METERS_PER_HDOP = 5f;
+    private static final float DEFAULT_ACCURACY = 10f;
+
+    public static List<LocationFix> read(File file) throws IOException {
+        return file.getName().toLowerCase().endsWith(".gpx") ? readGpx(file) : readCsv(file);
+    }
+
+    private static List<LocationFix> readCsv(File file) throws IOException {
+        List<LocationFix> fixes = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#") || !Character.isDigit(line.charAt(0))) {
+                    //Comments and the header row
+                    continue;
+                }
+                String[] columns = line.split(",", -1);
+                if (columns.length < 3) {
+                    throw new IOException(file.getName() + ":" + lineNumber + ": expected time,latitude,longitude");
+                }
+                try {
+                    fixes.add(new LocationFix(
+                            Double.parseDouble(columns[1]),
+                            Double.parseDouble(columns[2]),
+                            (float) column(columns, 3, DEFAULT_ACCURACY),
+                            column(columns, 4, Double.NaN),
+                            column(columns, 5, Double.NaN),
+                            Long.parseLong(columns[0].trim())));
+                } catch (NumberFormatException e) {
+                    throw new IOException(file.getName() + ":" + lineNumber + ": " + e.getMessage());
+                }
+            }
+        }
+        return fixes;
+    }
+
+    private static double column(String[] columns, int index, double missing) {
+        if (index >= columns.length || columns[index].trim().isEmpty()) {
+            return missing;
+        }
+        return Double.parseDouble(columns[index].trim());
+    }
+
+    private static List<LocationFix> readGpx(File file) throws IOException {
+        List<LocationFix> fixes = new ArrayList<>();
+        try (InputStream in = new FileInputStream(file)) {
+            XMLStreamReader reader = XMLInputFactory.newInstance().createXMLStreamReader(in);
+            double latitude = Double.NaN, longitude = Double.NaN, speed = Double.NaN, bearing = Double.NaN;
+            float accuracy = DEFAULT_ACCURACY;
+            long time = -1;
+            boolean inPoint = false;
+            while (reader.hasNext()) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    String name = reader.getLocalName();
+                    if ("trkpt".equals(name)) {
+                        inPoint = true;
+                        latitude = Double.parseDouble(reader.getAttributeValue(null, "lat"));
+                        longitude = Double.parseDouble(reader.getAttributeValue(null, "lon"));
+                        speed = Double.NaN;
+                        bearing = Double.NaN;
+                        accuracy = DEFAULT_ACCURACY;
+                        time = -1;
+                    } else if (inPoint && "time".equals(name)) {
+                        time = Instant.parse(reader.getElementText().trim()).toEpochMilli();
+                    } else if (inPoint && "hdop".equals(name)) {
+                        accuracy = Float.parseFloat(reader.getElementText().trim()) * METERS_PER_HDOP;
+                    } else if (inPoint && "speed".equals(name)) {
+                        speed = Double.parseDouble(reader.getElementText().trim());
+                    } else if (inPoint && "course".equals(name)) {
+                        bearing = Double.parseDouble(reader.getElementText().trim());
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT && "trkpt".equals(reader.getLocalName())) {
+                    inPoint = false;
+                    if (time < 0) {
+                        throw new IOException(file.getName() + ": trkpt without <time> at " + latitude + "," + longitude);
+                    }
+                    fixes.add(new LocationFix(latitude, longitude, accuracy, speed, bearing, time));
+                }
+            }
+            reader.close();
+        } catch (XMLStreamException | RuntimeException e) {
+            throw new IOException(file.getName() + ": " + e.getMessage(), e);
+        }
+        return fixes;
+    }
+}
@@ -0,0 +1,143 @@
+package com.developer.uberjava.simulator;
+
+import com.developer.uberjava.Common;
+import com.developer.uberjava.location.LocationFix;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+//Command line entry point:
+//  TraceReplay [--geohash] [--ack-ms N] [--warmup N] [--tolerance F] [--cpu-tolerance F]
+//              [--baseline FILE | --write-baseline FILE] trace.csv|trace.gpx...
+//Prints one report per trace. With --baseline it exits 1 when writes, bytes, onDisconnect
+//messages or lookups grow by more than --tolerance (default 0), or per-fix CPU by more than
+//--cpu-tolerance (default 1.0, CPU time is noisy across machines). Tunings come from Common,
+//change them there and replay.
+public class TraceReplay {
+
+    private static final String[] COUNTED = {TraceReplayer.WRITES, TraceReplayer.ON_DISCONNECT_MESSAGES,
+            TraceReplayer.BYTES_SENT, TraceReplayer.SHARD_LOOKUPS, TraceReplayer.GEOCODER_CALLS};
+    private static final String[] TIMED = {TraceReplayer.CPU_MEAN_MICROS, TraceReplayer.CPU_P50_MICROS};
+    //Below this a CPU difference is timer resolution, not a regression
+    private static final long CPU_SLACK_MICROS = 5;
+
+    public static void main(String[] args) throws IOException {
+        boolean shardByGeohash = Common.DRIVERS_LOCATION_SHARD_MODE == Common.SHARD_BY_GEOHASH;
+        long ackMillis = 0;
+        int warmup = 3;
+        double tolerance = 0;
+        double cpuTolerance = 1.0;
+        File baselineFile = null;
+        File writeBaselineFile = null;
+        List<File> traces = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--geohash":
+                    shardByGeohash = true;
+                    break;
+                case "--city":
+                    shardByGeohash = false;
+                    break;
+                case "--ack-ms":
+                    ackMillis = Long.parseLong(args[++i]);
+                    break;
+                case "--warmup":
+                    warmup = Integer.parseInt(args[++i]);
+                    break;
+                case "--tolerance":
+                    tolerance = Double.parseDouble(args[++i]);
+                    break;
+                case "--cpu-tolerance":
+                    cpuTolerance = Double.parseDouble(args[++i]);
+                    break;
+                case "--baseline":
+                    baselineFile = new File(args[++i]);
+                    break;
+                case "--write-baseline":
+                    writeBaselineFile = new File(args[++i]);
+                    break;
+                default:
+                    traces.add(new File(args[i]));
+            }
+        }
+        if (traces.isEmpty()) {
+            System.err.println("Usage: TraceReplay [--geohash|--city] [--ack-ms N] [--warmup N] [--tolerance F] [--cpu-tolerance F]"
+                    + " [--baseline FILE | --write-baseline FILE] trace...");
+            System.exit(2);
+        }
+
+        System.out.println("dead-band " + Common.PUBLISH_MIN_DISTANCE_METERS + "m/" + Common.PUBLISH_MIN_BEARING_DEGREES
+                + "deg, interval " + Common.PUBLISH_MIN_INTERVAL_MS + "ms, flush " + Common.PUBLISH_FLUSH_DISTANCE_METERS
+                + "m, shards by " + (shardByGeohash ? "geohash" : "city"));
+
+        TraceReplayer replayer = new TraceReplayer(shardByGeohash, ackMillis);
+        Properties results = new Properties();
+        for (File trace : traces) {
+            List<LocationFix> fixes = TraceReader.read(trace);
+            for (int i = 0; i < warmup; i++) {
+                replayer.replay(fixes);
+            }
+            Map<String, Long> report = replayer.replay(fixes);
+            System.out.println(trace.getName());
+            for (Map.Entry<String, Long> entry : report.entrySet()) {
+                System.out.println("  " + entry.getKey() + "=" + entry.getValue());
+                results.setProperty(trace.getName() + "." + entry.getKey(), String.valueOf(entry.getValue()));
+            }
+        }
+
+        if (writeBaselineFile != null) {
+            try (PrintWriter writer = new PrintWriter(new FileWriter(writeBaselineFile))) {
+                results.stringPropertyNames().stream().sorted()
+                        .forEach(key -> writer.println(key + "=" + results.getProperty(key)));
+            }
+            System.out.println("Baseline written to " + writeBaselineFile);
+        }
+        if (baselineFile != null && !compare(results, baselineFile, traces, tolerance, cpuTolerance)) {
+            System.exit(1);
+        }
+    }
+
+    private static boolean compare(Properties results, File baselineFile, List<File> traces,
+                                   double tolerance, double cpuTolerance) throws IOException {
+        Properties baseline = new Properties();
+        try (Reader reader = new FileReader(baselineFile)) {
+            baseline.load(reader);
+        }
+        boolean passed = true;
+        for (File trace : traces) {
+            if (baseline.getProperty(trace.getName() + "." + TraceReplayer.FIXES) == null) {
+                System.out.println("NEW  " + trace.getName() + " has no baseline yet");
+                continue;
+            }
+            for (String metric : COUNTED) {
+                passed &= check(results, baseline, trace.getName() + "." + metric, tolerance, 0);
+            }
+            for (String metric : TIMED) {
+                passed &= check(results, baseline, trace.getName() + "." + metric, cpuTolerance, CPU_SLACK_MICROS);
+            }
+        }
+        System.out.println(passed ? "Baseline check passed" : "Baseline check FAILED");
+        return passed;
+    }
+
+    private static boolean check(Properties results, Properties baseline, String key, double tolerance, long slack) {
+        long expected = Long.parseLong(baseline.getProperty(key, "0"));
+        long actual = Long.parseLong(results.getProperty(key, "0"));
+        if (actual > expected * (1 + tolerance) + slack) {
+            System.out.println("FAIL " + key + " " + expected + " -> " + actual);
+            return false;
+        }
+        if (actual < expected) {
+            System.out.println("LESS " + key + " " + expected + " -> " + actual);
+        }
+        return true;
+    }
+}
@@ -0,0 +1,138 @@
+package com.developer.uberjava.simulator;
+
+import com.developer.uberjava.Common;
+import com.developer.uberjava.location.CachedShardResolver;
+import com.developer.uberjava.location.GeoHashShardResolver;
+import com.developer.uberjava.location.LocationFix;
+import com.developer.uberjava.location.LocationTransformers;
+import com.developer.uberjava.location.ShardResolver;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Single;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.processors.PublishProcessor;
+import io.reactivex.schedulers.TestScheduler;
+
+//Replays one trace through LocationTransformers.smooth and publishPath with a TestScheduler as the clock
+//for both the throttle and the io hops, so a 30 minute drive runs in milliseconds and every
+//run makes the same decisions. Fix i is delivered at its recorded time offset.
+public class TraceReplayer {
+
+    public static final String FIXES = "fixes";
+    public static final String OUTLIERS = "outliers";
+    public static final String PUBLISHED = "published";
+    public static final String WRITES = "writes";
+    public static final String ON_DISCONNECT_MESSAGES = "onDisconnectMessages";
+    public static final String BYTES_SENT = "bytesSent";
+    public static final String SHARD_LOOKUPS = "shardLookups";
+    public static final String GEOCODER_CALLS = "geocoderCalls";
+    public static final String SHARDS = "shards";
+    public static final String ERRORS = "errors";
+    public static final String CPU_MEAN_MICROS = "cpuPerFixMeanMicros";
+    public static final String CPU_P50_MICROS = "cpuPerFixP50Micros";
+    public static final String CPU_P99_MICROS = "cpuPerFixP99Micros";
+    public static final String CPU_MAX_MICROS = "cpuPerFixMaxMicros";
+
+    private static final String UID = "replay-driver";
+    //Long enough for the throttle to flush whatever it still holds after the last fix
+    private static final long DRAIN_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+    private final boolean shardByGeohash;
+    private final long ackLatencyMillis;
+    private final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+
+    public TraceReplayer(boolean shardByGeohash, long ackLatencyMillis) {
+        this.shardByGeohash = shardByGeohash;
+        this.ackLatencyMillis = ackLatencyMillis;
+    }
+
+    public Map<String, Long> replay(List<LocationFix> fixes) {
+        TestScheduler clock = new TestScheduler();
+        FakeDatabase database = new FakeDatabase();
+        SimulatedPublisher publisher = new SimulatedPublisher(database, UID);
+        long[] counts = new long[5]; //shard lookups, geocoder calls, published, errors, outliers
+        GeoHashShardResolver cities = new GeoHashShardResolver(4);
+
+        //City mode stands in for the platform Geocoder with one synthetic city per ~39km cell,
+        //behind the same cell cache CityGeocoder uses
+        ShardResolver lookup = shardByGeohash
+                ? new GeoHashShardResolver(Common.GEOHASH_SHARD_PRECISION)
+                : new CachedShardResolver((latitude, longitude) -> {
+                    counts[1]++;
+                    return "city-" + cities.resolve(latitude, longitude);
+                }, Common.CITY_CELL_PRECISION, Common.CITY_CACHE_SIZE);
+        ShardResolver resolver = (latitude, longitude) -> {
+            counts[0]++;
+            return lookup.resolve(latitude, longitude);
+        };
+
+        PublishProcessor<LocationFix> input = PublishProcessor.create();
+        //Same order as LocationPublishService: smoothing, then the publish path
+        Disposable disposable = input
+                .compose(LocationTransformers.smooth(() -> counts[4]++))
+                .compose(LocationTransformers.publishPath(resolver, fix -> Single.<LocationFix>create(emitter -> {
+                    publisher.publish(fix.getShardName(), fix.getLatitude(), fix.getLongitude());
+                    if (ackLatencyMillis > 0) {
+                        clock.scheduleDirect(() -> emitter.onSuccess(fix), ackLatencyMillis, TimeUnit.MILLISECONDS);
+                    } else {
+                        emitter.onSuccess(fix);
+                    }
+                }), clock, clock, error -> counts[3]++))
+                .subscribe(fix -> counts[2]++);
+
+        long[] cpuNanos = new long[fixes.size()];
+        long startMillis = fixes.isEmpty() ? 0 : fixes.get(0).getTimeMillis();
+        for (int i = 0; i < fixes.size(); i++) {
+            LocationFix fix = fixes.get(i);
+            long before = cpuTime();
+            //Anything that came due before this fix arrived (throttled fixes, acks) runs first
+            clock.advanceTimeTo(Math.max(clock.now(TimeUnit.MILLISECONDS), fix.getTimeMillis() - startMillis), TimeUnit.MILLISECONDS);
+            input.onNext(fix);
+            clock.triggerActions();
+            cpuNanos[i] = cpuTime() - before;
+        }
+        clock.advanceTimeBy(DRAIN_MILLIS, TimeUnit.MILLISECONDS);
+        disposable.dispose();
+
+        Map<String, Long> report = new LinkedHashMap<>();
+        report.put(FIXES, (long) fixes.size());
+        report.put(OUTLIERS, counts[4]);
+        report.put(PUBLISHED, counts[2]);
+        report.put(WRITES, database.getWrites());
+        report.put(ON_DISCONNECT_MESSAGES, database.getControlMessages());
+        report.put(BYTES_SENT, database.getBytesSent());
+        report.put(SHARD_LOOKUPS, counts[0]);
+        report.put(GEOCODER_CALLS, counts[1]);
+        report.put(SHARDS, (long) publisher.getShardCount());
+        report.put(ERRORS, counts[3]);
+        Arrays.sort(cpuNanos);
+        long total = 0;
+        for (long nanos : cpuNanos) {
+            total += nanos;
+        }
+        report.put(CPU_MEAN_MICROS, cpuNanos.length == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(total / cpuNanos.length));
+        report.put(CPU_P50_MICROS, TimeUnit.NANOSECONDS.toMicros(percentile(cpuNanos, 50)));
+        report.put(CPU_P99_MICROS, TimeUnit.NANOSECONDS.toMicros(percentile(cpuNanos, 99)));
+        report.put(CPU_MAX_MICROS, TimeUnit.NANOSECONDS.toMicros(cpuNanos.length == 0 ? 0 : cpuNanos[cpuNanos.length - 1]));
+        return report;
+    }
+
+    private long cpuTime() {
+        return threadMXBean.isCurrentThreadCpuTimeSupported() ? threadMXBean.getCurrentThreadCpuTime() : System.nanoTime();
+    }
+
+    private static long percentile(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(sorted.length * percentile / 100.0);
+        return sorted[Math.max(0, rank - 1)];
+    }
+}